@@ -0,0 +1,70 @@
+package chess;
+
+/**
+ * Attack tables for the pieces whose attacks don't depend on the rest of the board, built once when the class is
+ * loaded.  Each entry is a bitboard: bit {@code row * 8 + column} is set if a piece on the given square attacks
+ * {@code [row, column]}, so asking whether a knight, king or pawn attacks a square is one lookup and one mask test.
+ */
+public final class Attacks {
+
+	private static final long[] KNIGHT = new long[64];
+	private static final long[] KING = new long[64];
+	//indexed by Player.ordinal(), then square
+	private static final long[][] PAWN = new long[2][64];
+
+	static {
+		int[][] knightSteps = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+		int[][] kingSteps = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+		for (int square = 0; square < 64; square++) {
+			KNIGHT[square] = steps(square, knightSteps);
+			KING[square] = steps(square, kingSteps);
+			//white pawns move towards row 0, black pawns towards row 7
+			PAWN[Player.WHITE.ordinal()][square] = steps(square, new int[][] {{-1, -1}, {-1, 1}});
+			PAWN[Player.BLACK.ordinal()][square] = steps(square, new int[][] {{1, -1}, {1, 1}});
+		}
+	}
+
+	private Attacks() {
+	}
+
+	public static long knight(int square) {
+		return KNIGHT[square];
+	}
+
+	public static long king(int square) {
+		return KING[square];
+	}
+
+	/**
+	 * Return the squares a pawn of player {@code p} on {@code square} can capture on.
+	 *
+	 * @param p      the owner of the pawn
+	 * @param square the square of the pawn
+	 * @return the bitboard of the two (or, on the edge, one) diagonally forward squares
+	 */
+	public static long pawn(Player p, int square) {
+		return PAWN[p.ordinal()][square];
+	}
+
+	/**
+	 * Return whether {@code bitboard} has the bit of {@code square} set.
+	 *
+	 * @param bitboard the set of squares
+	 * @param square   the square index ({@code row * 8 + column})
+	 * @return {@code true} if {@code square} is in the set
+	 */
+	public static boolean contains(long bitboard, int square) {
+		return (bitboard & (1L << square)) != 0;
+	}
+
+	private static long steps(int square, int[][] steps) {
+		long attacks = 0;
+		for (int[] step : steps) {
+			int r = (square >> 3) + step[0];
+			int c = (square & 7) + step[1];
+			if (r >= 0 && r < 8 && c >= 0 && c < 8)
+				attacks |= 1L << (r * 8 + c);
+		}
+		return attacks;
+	}
+}
@@ -0,0 +1,27 @@
+package chess;
+
+public class Bishop extends ChessPiece {
+
+	public Bishop(Player player) {
+		super(player);
+	}
+
+	public PieceKind kind() {
+		return PieceKind.BISHOP;
+	}
+
+	// determines if the move is valid for a bishop piece
+	public boolean isValidMove(Move move, IChessPiece[][] board) {
+		//calls the chesspiece isvalidmove method to check for generic validations
+		if(!super.isValidMove(move, board))
+			return false;
+
+		//checks if the bishop moved diagonally, invalid if not
+		if(!isDiagonal(move)){
+			return false;
+		}
+
+		//checks if the bishop will pass through a piece, returning invalid if true
+		return pathClear(move, board);
+	}
+}
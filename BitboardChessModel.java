@@ -0,0 +1,212 @@
+package chess;
+
+/**
+ * An {@link IChessModel} that stores the position as twelve 64-bit bitboards (one per piece type and color) plus
+ * occupancy masks, which answer the movement and check questions.  The piece objects themselves are kept in a
+ * 64-entry array next to the bitboards, so {@link #pieceAt} returns the object given to {@link #setPiece}, as
+ * {@link ChessModel} does.
+ *
+ * Squares are numbered {@code row * 8 + column}, so bit 0 is {@code [0][0]} (black's back rank) and bit 63 is
+ * {@code [7][7]}.  The movement rules are the same as the ones implemented by the {@link ChessPiece} subclasses.
+ */
+public class BitboardChessModel implements IChessModel {
+
+	//indexed by PieceKind.code(player)
+	private final long[] pieces = new long[12];
+	//the piece object on each square, row * 8 + column
+	private final IChessPiece[] squares = new IChessPiece[64];
+	private final long[] occupancy = new long[2];
+	private long occupied;
+	private Player player;
+
+	public BitboardChessModel() {
+		player = Player.WHITE;
+
+		PieceKind[] backRank = {PieceKind.ROOK, PieceKind.KNIGHT, PieceKind.BISHOP, PieceKind.QUEEN, PieceKind.KING,
+				PieceKind.BISHOP, PieceKind.KNIGHT, PieceKind.ROOK};
+		for (int c = 0; c < 8; c++) {
+			place(ChessPiece.of(backRank[c], Player.BLACK), c);
+			place(ChessPiece.of(PieceKind.PAWN, Player.BLACK), 8 + c);
+			place(ChessPiece.of(PieceKind.PAWN, Player.WHITE), 48 + c);
+			place(ChessPiece.of(backRank[c], Player.WHITE), 56 + c);
+		}
+	}
+
+	public boolean isComplete(Player p) {
+		long[] saved = pieces.clone();
+		long[] savedOccupancy = occupancy.clone();
+		long savedOccupied = occupied;
+		IChessPiece[] savedSquares = squares.clone();
+		boolean complete = true;
+
+		Move move = new Move();
+		//try every destination for every piece of p until one of them leaves p out of check
+		for (long own = occupancy[p.ordinal()]; own != 0 && complete; own &= own - 1) {
+			int from = Long.numberOfTrailingZeros(own);
+			for (int to = 0; to < 64 && complete; to++) {
+				move.fromRow = from >> 3;
+				move.fromColumn = from & 7;
+				move.toRow = to >> 3;
+				move.toColumn = to & 7;
+				if (isValidMove(move)) {
+					move(move);
+					if (!inCheck(p))
+						complete = false;
+					System.arraycopy(saved, 0, pieces, 0, 12);
+					System.arraycopy(savedOccupancy, 0, occupancy, 0, 2);
+					occupied = savedOccupied;
+					System.arraycopy(savedSquares, 0, squares, 0, 64);
+				}
+			}
+		}
+		return complete;
+	}
+
+	public boolean isValidMove(Move move) {
+		if (!onBoard(move.fromRow, move.fromColumn))
+			throw new IndexOutOfBoundsException(move.toString());
+		if (!onBoard(move.toRow, move.toColumn))
+			return false;
+
+		int from = move.fromRow * 8 + move.fromColumn;
+		int to = move.toRow * 8 + move.toColumn;
+		IChessPiece piece = squares[from];
+		if (piece == null || from == to)
+			return false;
+
+		int color = piece.player().ordinal();
+		//can't capture a piece of the same color
+		if ((occupancy[color] & (1L << to)) != 0)
+			return false;
+
+		int dr = move.toRow - move.fromRow;
+		int dc = move.toColumn - move.fromColumn;
+		switch (piece.kind()) {
+			case PAWN:
+				return isValidPawnMove(color, move, from, to, dr, dc);
+			case KNIGHT:
+				return Attacks.contains(Attacks.knight(from), to);
+			case BISHOP:
+				return Attacks.contains(Magic.bishop(from, occupied), to);
+			case ROOK:
+				return Attacks.contains(Magic.rook(from, occupied), to);
+			case QUEEN:
+				return Attacks.contains(Magic.queen(from, occupied), to);
+			default:
+				return Attacks.contains(Attacks.king(from), to);
+		}
+	}
+
+	public void move(Move move) {
+		int from = move.fromRow * 8 + move.fromColumn;
+		int to = move.toRow * 8 + move.toColumn;
+		IChessPiece piece = squares[from];
+		clear(to);
+		if (piece != null) {
+			clear(from);
+			//a pawn reaching the last row becomes a queen, as in ChessModel
+			if (piece.kind() == PieceKind.PAWN && (move.toRow == 0 || move.toRow == 7))
+				piece = ChessPiece.of(PieceKind.QUEEN, piece.player());
+			place(piece, to);
+		}
+	}
+
+	public boolean inCheck(Player p) {
+		long king = pieces[PieceKind.KING.code(p)];
+		if (king == 0)
+			return false;
+		return isAttacked(Long.numberOfTrailingZeros(king), p.next());
+	}
+
+	public Player currentPlayer() {
+		return player;
+	}
+
+	public int numRows() {
+		return 8;
+	}
+
+	public int numColumns() {
+		return 8;
+	}
+
+	public IChessPiece pieceAt(int row, int column) {
+		if (!onBoard(row, column))
+			throw new IndexOutOfBoundsException("[" + row + ", " + column + "]");
+		return squares[row * 8 + column];
+	}
+
+	public void setNextPlayer() {
+		player = player.next();
+	}
+
+	public void setPiece(int row, int column, IChessPiece piece) {
+		if (!onBoard(row, column))
+			throw new IndexOutOfBoundsException("[" + row + ", " + column + "]");
+		int square = row * 8 + column;
+		clear(square);
+		if (piece != null)
+			place(piece, square);
+	}
+
+	/**
+	 * Return whether {@code square} is attacked by any piece of player {@code by}.
+	 *
+	 * @param square the square index ({@code row * 8 + column})
+	 * @param by     the attacking player
+	 * @return {@code true} if a piece of {@code by} could capture on {@code square}
+	 */
+	public boolean isAttacked(int square, Player by) {
+		//a pawn of by attacks the square if a pawn of the other player on the square would attack the pawn
+		if ((Attacks.pawn(by.next(), square) & pieces[PieceKind.PAWN.code(by)]) != 0
+				|| (Attacks.knight(square) & pieces[PieceKind.KNIGHT.code(by)]) != 0
+				|| (Attacks.king(square) & pieces[PieceKind.KING.code(by)]) != 0)
+			return true;
+
+		long queens = pieces[PieceKind.QUEEN.code(by)];
+		long straight = pieces[PieceKind.ROOK.code(by)] | queens;
+		long diagonal = pieces[PieceKind.BISHOP.code(by)] | queens;
+		return (straight != 0 && (Magic.rook(square, occupied) & straight) != 0)
+				|| (diagonal != 0 && (Magic.bishop(square, occupied) & diagonal) != 0);
+	}
+
+	private boolean isValidPawnMove(int color, Move move, int from, int to, int dr, int dc) {
+		int forward = color == Player.WHITE.ordinal() ? -1 : 1;
+		int startRow = color == Player.WHITE.ordinal() ? 6 : 1;
+		long enemy = occupancy[1 - color];
+
+		//straight ahead, one square or two from the starting row, only onto empty squares
+		if (dc == 0) {
+			if (dr == forward)
+				return (occupied & (1L << to)) == 0;
+			if (dr == 2 * forward && move.fromRow == startRow)
+				return (occupied & ((1L << to) | (1L << (from + 8 * forward)))) == 0;
+			return false;
+		}
+		//diagonally forward only when capturing
+		return (Attacks.pawn(color == Player.WHITE.ordinal() ? Player.WHITE : Player.BLACK, from) & enemy & (1L << to)) != 0;
+	}
+
+	private void place(IChessPiece piece, int square) {
+		squares[square] = piece;
+		int index = piece.kind().code(piece.player());
+		long bit = 1L << square;
+		pieces[index] |= bit;
+		occupancy[index / 6] |= bit;
+		occupied |= bit;
+	}
+
+	private void clear(int square) {
+		squares[square] = null;
+		long mask = ~(1L << square);
+		for (int i = 0; i < 12; i++)
+			pieces[i] &= mask;
+		occupancy[0] &= mask;
+		occupancy[1] &= mask;
+		occupied &= mask;
+	}
+
+	private static boolean onBoard(int row, int column) {
+		return row >= 0 && row < 8 && column >= 0 && column < 8;
+	}
+}
@@ -0,0 +1,257 @@
+package chess;
+
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import javax.swing.*;
+
+/**
+ * A chess board drawn by a single component: squares and pieces are painted directly from piece images that are
+ * scaled once per square size, instead of being laid out as 64 buttons.  Clicks are mapped to squares with
+ * arithmetic, and a moved piece slides to its new square.
+ *
+ * The component keeps its own copy of the position, so it only reads the model in {@link #update}, and repaints
+ * only the squares that changed there.  Painting is double-buffered by Swing.
+ */
+public class BoardComponent extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Receives clicks on the board.
+     */
+    public interface SquareListener {
+        void squareClicked(int row, int column);
+    }
+
+    private static final Color LIGHT = Color.WHITE;
+    private static final Color DARK = Color.LIGHT_GRAY;
+    private static final Color SELECTED = new Color(246, 246, 105);
+    private static final int ANIMATION_MILLIS = 150;
+    private static final int FRAME_MILLIS = 15;
+
+    // the pieces as last read from the model, row * 8 + column
+    private final IChessPiece[] pieces = new IChessPiece[64];
+    // piece images indexed by PieceKind.code(player), as loaded and scaled to the current square size
+    private final Image[] images = new Image[12];
+    private final Image[] scaled = new Image[12];
+    private int scaledSize;
+    private int selected = -1;
+    private SquareListener listener;
+
+    // the piece sliding from animationFrom to animationTo, drawn on top of the board until the animation ends
+    private IChessPiece animated;
+    private int animationFrom;
+    private int animationTo;
+    private long animationStart;
+    private Rectangle animatedBounds;
+    private final Timer timer = new Timer(FRAME_MILLIS, e -> animate());
+
+    public BoardComponent() {
+        String[] names = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+        for (PieceKind kind : PieceKind.values()) {
+            images[kind.code(Player.WHITE)] = load("w" + names[kind.ordinal()]);
+            images[kind.code(Player.BLACK)] = load("b" + names[kind.ordinal()]);
+        }
+        setPreferredSize(new Dimension(600, 600));
+        setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
+        setDoubleBuffered(true);
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                int square = squareAt(e.getX(), e.getY());
+                if (square >= 0 && listener != null)
+                    listener.squareClicked(square >> 3, square & 7);
+            }
+        });
+    }
+
+    // the image file of a piece, or null if it can't be read, in which case the piece is drawn as a letter
+    private static Image load(String name) {
+        ImageIcon icon = new ImageIcon("./src/chess/" + name + ".png");
+        return icon.getIconWidth() > 0 ? icon.getImage() : null;
+    }
+
+    public void setSquareListener(SquareListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Highlight a square, such as the one holding the piece about to be moved.
+     *
+     * @param row    the row of the square, or {@code -1} to clear the highlight
+     * @param column the column of the square
+     */
+    public void setSelected(int row, int column) {
+        int square = row < 0 ? -1 : row * 8 + column;
+        if (square == selected)
+            return;
+        repaintSquare(selected);
+        selected = square;
+        repaintSquare(selected);
+    }
+
+    /**
+     * Show the position of {@code model}, repainting only the squares whose piece changed.
+     *
+     * @param model the model to show
+     */
+    public void update(ChessModel model) {
+        update(model, null);
+    }
+
+    /**
+     * Show the position of {@code model} after {@code move}, sliding the moved piece from its old square to its new
+     * one.  Only the squares whose piece changed are repainted.
+     *
+     * @param model the model to show
+     * @param move  the move just made, or {@code null} to show the position without animation
+     */
+    public void update(ChessModel model, Move move) {
+        finishAnimation();
+        for (int square = 0; square < 64; square++) {
+            IChessPiece piece = model.pieceAt(square >> 3, square & 7);
+            if (piece != pieces[square]) {
+                pieces[square] = piece;
+                repaintSquare(square);
+            }
+        }
+        if (move != null && pieces[move.toRow * 8 + move.toColumn] != null) {
+            animated = pieces[move.toRow * 8 + move.toColumn];
+            animationFrom = move.fromRow * 8 + move.fromColumn;
+            animationTo = move.toRow * 8 + move.toColumn;
+            animationStart = System.nanoTime();
+            animatedBounds = animationBounds();
+            timer.start();
+        }
+    }
+
+    private void animate() {
+        if (System.nanoTime() - animationStart >= ANIMATION_MILLIS * 1000000L) {
+            finishAnimation();
+            return;
+        }
+        //the frame covers where the piece was and where it is now
+        Rectangle next = animationBounds();
+        repaint(next.union(animatedBounds));
+        animatedBounds = next;
+    }
+
+    private void finishAnimation() {
+        if (animated == null)
+            return;
+        timer.stop();
+        animated = null;
+        repaint(animatedBounds);
+        repaintSquare(animationFrom);
+        repaintSquare(animationTo);
+    }
+
+    // where the sliding piece is drawn at this point of the animation
+    private Rectangle animationBounds() {
+        int size = squareSize();
+        double t = Math.min(1, (System.nanoTime() - animationStart) / (ANIMATION_MILLIS * 1e6));
+        //ease out, fast at first and slowing into the square
+        t = 1 - (1 - t) * (1 - t);
+        Point from = origin(animationFrom);
+        Point to = origin(animationTo);
+        return new Rectangle((int) Math.round(from.x + (to.x - from.x) * t),
+                (int) Math.round(from.y + (to.y - from.y) * t), size, size);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setColor(getBackground() != null ? getBackground() : Color.DARK_GRAY);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        int size = squareSize();
+        if (size <= 0)
+            return;
+        if (size != scaledSize)
+            rescale(size);
+
+        //only the squares inside the clip, which is a few squares for most repaints
+        Rectangle clip = g2.getClipBounds() != null ? g2.getClipBounds() : new Rectangle(getWidth(), getHeight());
+        for (int square = 0; square < 64; square++) {
+            Point origin = origin(square);
+            if (!clip.intersects(origin.x, origin.y, size, size))
+                continue;
+            int row = square >> 3;
+            int column = square & 7;
+            g2.setColor(square == selected ? SELECTED : (row + column) % 2 == 0 ? LIGHT : DARK);
+            g2.fillRect(origin.x, origin.y, size, size);
+            IChessPiece piece = pieces[square];
+            if (piece != null && !(animated != null && square == animationTo))
+                drawPiece(g2, piece, origin.x, origin.y, size);
+        }
+        if (animated != null)
+            drawPiece(g2, animated, animatedBounds.x, animatedBounds.y, size);
+    }
+
+    private void drawPiece(Graphics2D g2, IChessPiece piece, int x, int y, int size) {
+        Image image = scaled[piece.kind().code(piece.player())];
+        if (image != null) {
+            g2.drawImage(image, x, y, null);
+            return;
+        }
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setFont(getFont().deriveFont(size * 0.6f));
+        char letter = piece.kind().letter();
+        String text = String.valueOf(piece.player() == Player.WHITE ? letter : Character.toLowerCase(letter));
+        FontMetrics metrics = g2.getFontMetrics();
+        g2.setColor(piece.player() == Player.WHITE ? Color.BLUE.darker() : Color.BLACK);
+        g2.drawString(text, x + (size - metrics.stringWidth(text)) / 2, y + (size + metrics.getAscent() - metrics.getDescent()) / 2);
+    }
+
+    // scales every piece image once for a new square size, so painting only copies pixels
+    private void rescale(int size) {
+        for (int i = 0; i < 12; i++) {
+            if (images[i] == null)
+                continue;
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(images[i], 0, 0, size, size, null);
+            g.dispose();
+            scaled[i] = image;
+        }
+        scaledSize = size;
+    }
+
+    private int squareSize() {
+        return Math.min(getWidth(), getHeight()) / 8;
+    }
+
+    // the top left corner of a square; the board is centered in the component
+    private Point origin(int square) {
+        int size = squareSize();
+        return new Point((getWidth() - 8 * size) / 2 + (square & 7) * size, (getHeight() - 8 * size) / 2 + (square >> 3) * size);
+    }
+
+    /**
+     * Return the square at a point of the component.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the square, {@code row * 8 + column}, or {@code -1} if the point is off the board
+     */
+    public int squareAt(int x, int y) {
+        int size = squareSize();
+        if (size <= 0)
+            return -1;
+        int column = Math.floorDiv(x - (getWidth() - 8 * size) / 2, size);
+        int row = Math.floorDiv(y - (getHeight() - 8 * size) / 2, size);
+        return row >= 0 && row < 8 && column >= 0 && column < 8 ? row * 8 + column : -1;
+    }
+
+    private void repaintSquare(int square) {
+        if (square < 0)
+            return;
+        Point origin = origin(square);
+        int size = squareSize();
+        repaint(origin.x, origin.y, size, size);
+    }
+}
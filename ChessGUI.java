@@ -14,7 +14,7 @@ public class ChessGUI {
         frame.getContentPane().add(panel);
 
         frame.setResizable(true);
-        frame.setPreferredSize(new Dimension(637, 637));
+        frame.setPreferredSize(new Dimension(637, 700));
         frame.pack();
         frame.setVisible(true);
     }
@@ -1,8 +1,48 @@
 package chess;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class ChessModel implements IChessModel {	 
+	//no position has more moves than this, so it is enough for any move buffer
+	public static final int MAX_MOVES = 256;
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+
+
     private IChessPiece[][] board;
 	private Player player;
+	//square (row * 8 + column) of each player's king, indexed by Player.ordinal(), -1 if it has none
+	private int[] kingSquare = {-1, -1};
+	//the same position as bitboards: one per piece kind and player indexed by PieceKind.code(player), and all the
+	//pieces of each player indexed by Player.ordinal()
+	private final long[] bitboards = new long[12];
+	private final long[] occupancy = new long[2];
+	//material and piece-square score of the pieces on the board
+	private final Evaluation evaluation = new Evaluation();
+
+	//undo stack for makeMove/unmakeMove, one entry per move made and grown if a game outlasts it
+	private IChessPiece[] undoMoved = new IChessPiece[256];
+	private IChessPiece[] undoCaptured = new IChessPiece[256];
+	//from | to << 6 | previous player << 12, the moved piece covers promotions
+	private int[] undoInfo = new int[256];
+	private long[] undoKey = new long[256];
+	private int undoSize;
+
+	//Zobrist key of the position, kept up to date by every change to the board or the player
+	private long zobrist;
+
+	//created the first time the AI is asked to move
+	private Search engine;
+	//consulted by the AI before searching, if set
+	private PolyglotBook book;
+	//probed by isComplete and the search for positions with three pieces, if set
+	private Tablebase tablebase;
+	//move buffer for isComplete
+	private final int[] scratch = new int[MAX_MOVES];
+	//the pieces read by setFen, only put on the board once the whole record is known to be valid
+	private final IChessPiece[] fenSquares = new IChessPiece[64];
 
 	// declare other instance variables as needed
 
@@ -10,106 +50,593 @@ public class ChessModel implements IChessModel {
 		board = new IChessPiece[8][8];
 		player = Player.WHITE;
 
-		board[7][0] = new Rook(Player.WHITE);
-		board[7][1] = new Knight(Player.WHITE);
-		board[7][2] = new Bishop(Player.WHITE);
-		board[7][3] = new Queen(Player.WHITE);
-		board[7][4] = new King(Player.WHITE);
-		board[7][5] = new Bishop(Player.WHITE);
-		board[7][6] = new Knight (Player.WHITE);
-		board[7][7] = new Rook(Player.WHITE);
-		board[0][0] = new Rook(Player.BLACK);
-		board[0][1] = new Knight(Player.BLACK);
-		board[0][2] = new Bishop(Player.BLACK);
-		board[0][3] = new Queen(Player.BLACK);
-		board[0][4] = new King(Player.BLACK);
-		board[0][5] = new Bishop(Player.BLACK);
-		board[0][6] = new Knight (Player.BLACK);
-		board[0][7] = new Rook(Player.BLACK);
+		PieceKind[] backRow = {PieceKind.ROOK, PieceKind.KNIGHT, PieceKind.BISHOP, PieceKind.QUEEN, PieceKind.KING,
+				PieceKind.BISHOP, PieceKind.KNIGHT, PieceKind.ROOK};
 		for (int i = 0; i < 8; i++) {
-			board[6][i] = new Pawn(Player.WHITE);
+			board[7][i] = ChessPiece.of(backRow[i], Player.WHITE);
+			board[6][i] = ChessPiece.of(PieceKind.PAWN, Player.WHITE);
+			board[1][i] = ChessPiece.of(PieceKind.PAWN, Player.BLACK);
+			board[0][i] = ChessPiece.of(backRow[i], Player.BLACK);
 		}
-		for (int i = 0; i < 8; i++) {
-			board[1][i] = new Pawn(Player.BLACK);
+		kingSquare[Player.WHITE.ordinal()] = 7 * 8 + 4;
+		kingSquare[Player.BLACK.ordinal()] = 4;
+		for (int square = 0; square < 64; square++)
+			place(board[square >> 3][square & 7], square);
+		zobrist = computeZobristKey();
+	}
+
+	/**
+	 * Create a model holding the same position as {@code other}, with an empty undo stack.  The two models share
+	 * piece objects but not boards, so either can be changed without affecting the other.
+	 *
+	 * @param other the model to copy
+	 */
+	public ChessModel(ChessModel other) {
+		board = new IChessPiece[8][8];
+		copyFrom(other);
+	}
+
+	/**
+	 * Replace this model's position with the one of {@code other} and clear the undo stack.  The model also starts
+	 * using {@code other}'s tablebase.
+	 *
+	 * @param other the model to copy
+	 */
+	public void copyFrom(ChessModel other) {
+		for (int r = 0; r < 8; r++)
+			System.arraycopy(other.board[r], 0, board[r], 0, 8);
+		player = other.player;
+		kingSquare[0] = other.kingSquare[0];
+		kingSquare[1] = other.kingSquare[1];
+		System.arraycopy(other.bitboards, 0, bitboards, 0, 12);
+		System.arraycopy(other.occupancy, 0, occupancy, 0, 2);
+		evaluation.copyFrom(other.evaluation);
+		zobrist = other.zobrist;
+		tablebase = other.tablebase;
+		Arrays.fill(undoMoved, 0, undoSize, null);
+		Arrays.fill(undoCaptured, 0, undoSize, null);
+		undoSize = 0;
+	}
+
+	/**
+	 * Set up the position described by a FEN record, such as
+	 * {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}.  The record is read character by
+	 * character straight from {@code fen}, without creating strings or other objects, so that loading many
+	 * positions costs no garbage.  The castling and en passant fields are checked but ignored, and the move counters
+	 * may be left out, since this model has neither castling, en passant nor counters.  The undo stack is cleared.
+	 *
+	 * @param fen the FEN record
+	 * @throws IllegalArgumentException if {@code fen} is not a valid FEN record; the model is then left unchanged
+	 */
+	public void setFen(CharSequence fen) {
+		Arrays.fill(fenSquares, null);
+		int length = fen.length();
+		int i = 0;
+		//piece placement, row 0 (rank 8) first
+		int row = 0;
+		int column = 0;
+		for (; i < length && fen.charAt(i) != ' '; i++) {
+			char ch = fen.charAt(i);
+			if (ch == '/') {
+				if (column != 8 || ++row > 7)
+					throw fenError(fen, i);
+				column = 0;
+			} else if (ch >= '1' && ch <= '8') {
+				column += ch - '0';
+				if (column > 8)
+					throw fenError(fen, i);
+			} else {
+				PieceKind kind = PieceKind.ofLetter(ch);
+				if (kind == null || column > 7)
+					throw fenError(fen, i);
+				fenSquares[row * 8 + column] = ChessPiece.of(kind, Character.isUpperCase(ch) ? Player.WHITE : Player.BLACK);
+				column++;
+			}
+		}
+		if (row != 7 || column != 8)
+			throw fenError(fen, i);
+
+		//side to move
+		if (i + 2 > length || (fen.charAt(i + 1) != 'w' && fen.charAt(i + 1) != 'b'))
+			throw fenError(fen, i + 1);
+		Player next = fen.charAt(i + 1) == 'w' ? Player.WHITE : Player.BLACK;
+		i += 2;
+
+		//castling, en passant and the move counters are optional here
+		if (i < length) {
+			if (fen.charAt(i) != ' ')
+				throw fenError(fen, i);
+			for (i++; i < length && fen.charAt(i) != ' '; i++) {
+				if ("KQkq-".indexOf(fen.charAt(i)) < 0)
+					throw fenError(fen, i);
+			}
+		}
+		if (i < length) {
+			i++;
+			if (i < length && fen.charAt(i) == '-') {
+				i++;
+			} else if (i + 1 < length && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h'
+					&& (fen.charAt(i + 1) == '3' || fen.charAt(i + 1) == '6')) {
+				i += 2;
+			} else {
+				throw fenError(fen, i);
+			}
+		}
+		for (int counter = 0; counter < 2 && i < length; counter++) {
+			if (fen.charAt(i) != ' ' || i + 1 >= length || !Character.isDigit(fen.charAt(i + 1)))
+				throw fenError(fen, i);
+			for (i++; i < length && Character.isDigit(fen.charAt(i)); i++)
+				;
 		}
+		if (i < length)
+			throw fenError(fen, i);
+
+		//the record is valid, so replace the position
+		Arrays.fill(undoMoved, 0, undoSize, null);
+		Arrays.fill(undoCaptured, 0, undoSize, null);
+		undoSize = 0;
+		kingSquare[0] = kingSquare[1] = -1;
+		for (int square = 0; square < 64; square++) {
+			lift(board[square >> 3][square & 7], square);
+			IChessPiece piece = fenSquares[square];
+			board[square >> 3][square & 7] = piece;
+			place(piece, square);
+			if (piece != null && piece.kind() == PieceKind.KING)
+				kingSquare[piece.player().ordinal()] = square;
+		}
+		Arrays.fill(fenSquares, null);
+		player = next;
+		zobrist = computeZobristKey();
 	}
 
-	public boolean isComplete(Player p) {
-		boolean checkmate = true;
-		if(inCheck(p)){
-			for(int i = 0; i < 8; i++){
-				for(int i2 = 0; i2 < 8; i2++){
-					if(board[i][i2] != null && board[i][i2].player() == p){
-						for(int i3 = 0; i3 < 8; i3++){
-							for (int i4 = 0; i4 < 8; i4++){
-								Move move = new Move(i,i2,i3,i4);
-								if(board[i][i2]!= null && board[i][i2].isValidMove(move,board)){
-									var temp = board[i3][i4];
-									board[i3][i4] = board[i][i2];
-									board[i][i2] = null;
-									if(!inCheck(p)){
-										checkmate = false;
-									}
-									board[i][i2] = board[i3][i4];
-									board[i3][i4] = temp;
-								}
-							}
-						}
-					}
+	private static IllegalArgumentException fenError(CharSequence fen, int index) {
+		return new IllegalArgumentException("Invalid FEN at index " + index + ": " + fen);
+	}
+
+	/**
+	 * Return the position as a FEN record.  Castling and en passant are always {@code -}, and the move counters
+	 * {@code 0 1}, since this model doesn't keep them.
+	 *
+	 * @return the FEN record of the position
+	 */
+	public String toFen() {
+		return appendFen(new StringBuilder(90)).toString();
+	}
+
+	/**
+	 * Append the position as a FEN record to {@code out}, like {@link #toFen()} but without creating a string.
+	 *
+	 * @param out the builder to append to
+	 * @return {@code out}
+	 */
+	public StringBuilder appendFen(StringBuilder out) {
+		for (int r = 0; r < 8; r++) {
+			int empty = 0;
+			for (int c = 0; c < 8; c++) {
+				var piece = board[r][c];
+				if (piece == null) {
+					empty++;
+					continue;
 				}
+				if (empty > 0)
+					out.append((char) ('0' + empty));
+				empty = 0;
+				char letter = piece.kind().letter();
+				out.append(piece.player() == Player.WHITE ? letter : Character.toLowerCase(letter));
 			}
+			if (empty > 0)
+				out.append((char) ('0' + empty));
+			if (r < 7)
+				out.append('/');
+		}
+		return out.append(player == Player.WHITE ? " w" : " b").append(" - - 0 1");
+	}
+
+	public boolean isComplete(Player p) {
+		//a won or lost tablebase position is over only if it is mate now; draws still need a look for stalemate
+		if (tablebase != null) {
+			int entry = tablebase.probe(this, p);
+			if (entry != Tablebase.NOT_FOUND && Tablebase.wdl(entry) != Tablebase.DRAW)
+				return Tablebase.movesToMate(entry) == 0;
+		}
+		//the game is over once p has no legal move left (checkmate if in check, stalemate otherwise)
+		int count = generate(p, scratch, false);
+		for (int i = 0; i < count; i++) {
+			if (!leavesKingInCheck(scratch[i], p))
+				return false;
 		}
-		return checkmate;
+		return true;
+	}
+
+	/**
+	 * Write every move the pieces of player {@code p} can make according to their movement patterns into
+	 * {@code buffer} as {@link PackedMove packed moves}, without checking whether the move would leave {@code p}'s
+	 * own king in check.  A pawn reaching the last row gives one move per promotion piece.
+	 *
+	 * @param p      the player whose moves are generated
+	 * @param buffer where the moves are written, at least {@link #MAX_MOVES} long
+	 * @return the number of moves written
+	 */
+	public int pseudoLegalMoves(Player p, int[] buffer) {
+		return generate(p, buffer, false);
+	}
+
+	/**
+	 * Like {@link #pseudoLegalMoves(Player, int[])}, but only the moves that capture a piece.
+	 *
+	 * @param p      the player whose moves are generated
+	 * @param buffer where the moves are written, at least {@link #MAX_MOVES} long
+	 * @return the number of moves written
+	 */
+	public int captureMoves(Player p, int[] buffer) {
+		return generate(p, buffer, true);
+	}
+
+	/**
+	 * Write every move of player {@code p} that is allowed by the piece's movement pattern and does not leave
+	 * {@code p}'s own king in check into {@code buffer} as {@link PackedMove packed moves}.
+	 *
+	 * @param p      the player whose moves are generated
+	 * @param buffer where the moves are written, at least {@link #MAX_MOVES} long
+	 * @return the number of moves written
+	 */
+	public int legalMoves(Player p, int[] buffer) {
+		int count = generate(p, buffer, false);
+		int legal = 0;
+		for (int i = 0; i < count; i++) {
+			if (!leavesKingInCheck(buffer[i], p))
+				buffer[legal++] = buffer[i];
+		}
+		return legal;
+	}
+
+	/**
+	 * Return every move the pieces of player {@code p} can make according to their movement patterns, without
+	 * checking whether the move would leave {@code p}'s own king in check.  Promotions are listed once, as the
+	 * move {@link #move(Move)} would make.
+	 *
+	 * @param p the player whose moves are generated
+	 * @return the pseudo-legal moves of {@code p}
+	 */
+	public List<Move> pseudoLegalMoves(Player p) {
+		int[] buffer = new int[MAX_MOVES];
+		return toMoves(buffer, pseudoLegalMoves(p, buffer));
+	}
+
+	/**
+	 * Return every move of player {@code p} that is allowed by the piece's movement pattern and does not leave
+	 * {@code p}'s own king in check.  Promotions are listed once, as the move {@link #move(Move)} would make.
+	 *
+	 * @param p the player whose moves are generated
+	 * @return the legal moves of {@code p}
+	 */
+	public List<Move> legalMoves(Player p) {
+		int[] buffer = new int[MAX_MOVES];
+		return toMoves(buffer, legalMoves(p, buffer));
+	}
+
+	private static List<Move> toMoves(int[] buffer, int count) {
+		List<Move> moves = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			PieceKind promotion = PackedMove.promotion(buffer[i]);
+			if (promotion == null || promotion == PieceKind.QUEEN)
+				moves.add(PackedMove.toMove(buffer[i]));
+		}
+		return moves;
+	}
+
+	/**
+	 * Return whether a move from {@link #pseudoLegalMoves(Player, int[])} of the current player is legal, that is
+	 * whether it leaves the player's king out of check.
+	 *
+	 * @param move the packed move
+	 * @return {@code true} if the move is legal
+	 */
+	public boolean isLegal(int move) {
+		return !leavesKingInCheck(move, player);
+	}
+
+	//tries the move on the board, checks p's king and takes it back
+	private boolean leavesKingInCheck(int move, Player p) {
+		makeMove(move);
+		boolean check = inCheck(p);
+		unmakeMove();
+		return check;
+	}
+
+	private int generate(Player p, int[] buffer, boolean capturesOnly) {
+		int count = 0;
+		for (int square = 0; square < 64; square++) {
+			IChessPiece piece = board[square >> 3][square & 7];
+			if (piece == null || piece.player() != p)
+				continue;
+			switch (piece.kind()) {
+				case PAWN:
+					count = addPawnMoves(square, p, buffer, count, capturesOnly);
+					break;
+				case KNIGHT:
+					count = addTargets(square, Attacks.knight(square), p, buffer, count, capturesOnly);
+					break;
+				case KING:
+					count = addTargets(square, Attacks.king(square), p, buffer, count, capturesOnly);
+					break;
+				case BISHOP:
+				case ROOK:
+				case QUEEN:
+					count = addTargets(square, slidingAttacks(piece.kind(), square), p, buffer, count, capturesOnly);
+					break;
+			}
+		}
+		return count;
+	}
+
+	private int addPawnMoves(int from, Player p, int[] buffer, int count, boolean capturesOnly) {
+		int r = from >> 3;
+		int c = from & 7;
+		int forward = p == Player.WHITE ? -1 : 1;
+		int startRow = p == Player.WHITE ? 6 : 1;
+		int r2 = r + forward;
+		if (r2 < 0 || r2 > 7)
+			return count;
+		//straight ahead onto empty squares, two squares from the starting row
+		if (!capturesOnly && board[r2][c] == null) {
+			count = addPawnMove(from, r2 * 8 + c, 0, buffer, count);
+			if (r == startRow && board[r2 + forward][c] == null)
+				buffer[count++] = PackedMove.of(from, (r2 + forward) * 8 + c, PackedMove.DOUBLE_PUSH);
+		}
+		//diagonally forward only when capturing
+		for (long targets = Attacks.pawn(p, from) & occupancy[p.next().ordinal()]; targets != 0; targets &= targets - 1)
+			count = addPawnMove(from, Long.numberOfTrailingZeros(targets), PackedMove.CAPTURE, buffer, count);
+		return count;
+	}
+
+	//a pawn reaching the last row is promoted, best piece first
+	private static int addPawnMove(int from, int to, int flags, int[] buffer, int count) {
+		if (to < 8 || to >= 56) {
+			buffer[count++] = PackedMove.of(from, to, PieceKind.QUEEN, flags);
+			buffer[count++] = PackedMove.of(from, to, PieceKind.ROOK, flags);
+			buffer[count++] = PackedMove.of(from, to, PieceKind.BISHOP, flags);
+			buffer[count++] = PackedMove.of(from, to, PieceKind.KNIGHT, flags);
+		} else {
+			buffer[count++] = PackedMove.of(from, to, flags);
+		}
+		return count;
+	}
+
+	//one move to each square of attacks not holding a piece of p
+	private int addTargets(int from, long attacks, Player p, int[] buffer, int count, boolean capturesOnly) {
+		long enemy = occupancy[p.next().ordinal()];
+		for (long targets = attacks & enemy; targets != 0; targets &= targets - 1)
+			buffer[count++] = PackedMove.of(from, Long.numberOfTrailingZeros(targets), PackedMove.CAPTURE);
+		if (!capturesOnly) {
+			for (long targets = attacks & ~(enemy | occupancy[p.ordinal()]); targets != 0; targets &= targets - 1)
+				buffer[count++] = PackedMove.of(from, Long.numberOfTrailingZeros(targets), 0);
+		}
+		return count;
 	}
 
 	public boolean isValidMove(Move move) {
 		boolean valid = false;
+		var piece = board[move.fromRow][move.fromColumn];
+		if (piece == null)
+			return valid;
 
-		if (board[move.fromRow][move.fromColumn] != null)
-			if (board[move.fromRow][move.fromColumn].isValidMove(move, board) )
-				return true;
+		//sliders are looked up in the magic tables, which need the occupancy only the model has
+		PieceKind kind = piece.kind();
+		if (kind == PieceKind.BISHOP || kind == PieceKind.ROOK || kind == PieceKind.QUEEN) {
+			if (move.toRow < 0 || move.toRow > 7 || move.toColumn < 0 || move.toColumn > 7)
+				return valid;
+			long targets = slidingAttacks(kind, move.fromRow * 8 + move.fromColumn) & ~occupancy[piece.player().ordinal()];
+			return Attacks.contains(targets, move.toRow * 8 + move.toColumn);
+		}
+		if (piece.isValidMove(move, board))
+			return true;
 
 		return valid;
 	}
 
+	private long slidingAttacks(PieceKind kind, int square) {
+		long occupied = occupancy[0] | occupancy[1];
+		if (kind == PieceKind.ROOK)
+			return Magic.rook(square, occupied);
+		if (kind == PieceKind.BISHOP)
+			return Magic.bishop(square, occupied);
+		return Magic.queen(square, occupied);
+	}
+
+	/**
+	 * Moves the piece from location {@code [move.fromRow, move.fromColumn]} to location {@code [move.toRow,
+	 * move.toColumn]}.  A pawn reaching the last row becomes a queen.
+	 *
+	 * @param move a  object describing the move to be made.
+	 */
 	public void move(Move move) {
-		board[move.toRow][move.toColumn] =  board[move.fromRow][move.fromColumn];
-		board[move.fromRow][move.fromColumn] = null;
+		int packed = encode(move);
+		movePiece(PackedMove.from(packed), PackedMove.to(packed), PackedMove.promotion(packed));
+	}
+
+	/**
+	 * Pack a {@link Move} for this position the way {@link #move(Move)} plays it, so a pawn reaching the last row
+	 * is promoted to a queen.
+	 *
+	 * @param move the move to pack
+	 * @return the packed move
+	 */
+	public int encode(Move move) {
+		int packed = PackedMove.of(move);
+		var piece = board[move.fromRow][move.fromColumn];
+		if (piece != null && piece.kind() == PieceKind.PAWN && (move.toRow == 0 || move.toRow == 7))
+			packed = PackedMove.of(PackedMove.from(packed), PackedMove.to(packed), PieceKind.QUEEN, 0);
+		return packed;
+	}
+
+	private void movePiece(int from, int to, PieceKind promotion) {
+		var piece = board[from >> 3][from & 7];
+		var captured = board[to >> 3][to & 7];
+		var placed = promotion != null && piece != null ? ChessPiece.of(promotion, piece.player()) : piece;
+		zobrist ^= Zobrist.key(piece, from) ^ Zobrist.key(captured, to) ^ Zobrist.key(placed, to);
+		lift(piece, from);
+		lift(captured, to);
+		place(placed, to);
+		board[to >> 3][to & 7] = placed;
+		board[from >> 3][from & 7] = null;
+		if (isKing(captured))
+			lostKing(captured.player(), to);
+		if (isKing(placed))
+			kingSquare[placed.player().ordinal()] = to;
+	}
+
+	/**
+	 * Moves the piece like {@link #move(Move)}, records what is needed to take the move back with
+	 * {@link #unmakeMove()} and passes the turn to the moving piece's opponent.
+	 *
+	 * @param move an object describing the move to be made.
+	 */
+	public void makeMove(Move move) {
+		makeMove(encode(move));
+	}
+
+	/**
+	 * Makes a {@link PackedMove packed move}, records what is needed to take it back with {@link #unmakeMove()} and
+	 * passes the turn to the moving piece's opponent.
+	 *
+	 * @param move the packed move
+	 */
+	public void makeMove(int move) {
+		if (undoSize == undoInfo.length) {
+			undoMoved = Arrays.copyOf(undoMoved, undoSize * 2);
+			undoCaptured = Arrays.copyOf(undoCaptured, undoSize * 2);
+			undoInfo = Arrays.copyOf(undoInfo, undoSize * 2);
+			undoKey = Arrays.copyOf(undoKey, undoSize * 2);
+		}
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		var piece = board[from >> 3][from & 7];
+		undoMoved[undoSize] = piece;
+		undoCaptured[undoSize] = board[to >> 3][to & 7];
+		undoInfo[undoSize] = from | to << 6 | player.ordinal() << 12;
+		undoKey[undoSize] = zobrist;
+		undoSize++;
+
+		movePiece(from, to, PackedMove.promotion(move));
+		Player next = piece != null ? piece.player().next() : player.next();
+		if (next != player)
+			setNextPlayer();
+	}
+
+	/**
+	 * Takes back the last move made with {@link #makeMove(Move)}, restoring any captured piece and the player whose
+	 * turn it was.
+	 *
+	 * @throws IllegalStateException if there is no move to take back
+	 */
+	public void unmakeMove() {
+		if (undoSize == 0)
+			throw new IllegalStateException("No move to take back");
+		undoSize--;
+		int info = undoInfo[undoSize];
+		int from = info & 63;
+		int to = (info >> 6) & 63;
+		var piece = undoMoved[undoSize];
+		var captured = undoCaptured[undoSize];
+		undoMoved[undoSize] = null;
+		undoCaptured[undoSize] = null;
+
+		lift(board[to >> 3][to & 7], to);
+		place(captured, to);
+		place(piece, from);
+		board[from >> 3][from & 7] = piece;
+		board[to >> 3][to & 7] = captured;
+		if (isKing(piece))
+			kingSquare[piece.player().ordinal()] = from;
+		if (isKing(captured))
+			kingSquare[captured.player().ordinal()] = to;
+		player = ((info >> 12) & 1) == Player.WHITE.ordinal() ? Player.WHITE : Player.BLACK;
+		zobrist = undoKey[undoSize];
+	}
+
+	/**
+	 * Return how many moves made with {@link #makeMove(Move)} can still be taken back.
+	 *
+	 * @return the number of moves on the undo stack
+	 */
+	public int undoDepth() {
+		return undoSize;
 	}
 
 	//incheck
-//find other player king first
-//scan board for not null spaces and if they are of your color
-//check for all  your pieces if it is a valid move for them to move to king space.
-//create move to go to king space and check if it is valid
-//then display in check popup
-
-	//checkmate
-//go through each piece of team in check and try to input every possible move then check if still in check
+//look up the player's king square, then look outward from it for an enemy piece that attacks it
 	public boolean inCheck(Player p) {
-		int x=0;
-		int y=0;
-		boolean valid = false;
-		//locate this players king
-		for (int i = 0; i <  8; i++) {
-			for(int i2 = 0; i2 < 8; i2++) {
-				if (board[i][i2] != null && board[i][i2].type() == "King" && board[i][i2].player() == p) {
-					x = i2;
-					y = i;
-				}
-			}
+		int king = kingSquare[p.ordinal()];
+		if (king < 0)
+			return false;
+		return isAttacked(king >> 3, king & 7, p.next());
+	}
+
+	/**
+	 * Return whether the square {@code [row, column]} is attacked by any piece of player {@code by}.  Instead of
+	 * asking every piece on the board, this masks the {@link Attacks} tables and the {@link Magic} rook and bishop
+	 * attacks from the square with the bitboards of the matching pieces of {@code by}.
+	 *
+	 * @param row    the row of the square
+	 * @param column the column of the square
+	 * @param by     the attacking player
+	 * @return {@code true} if a piece of {@code by} could capture on {@code [row, column]}
+	 */
+	public boolean isAttacked(int row, int column, Player by) {
+		int square = row * 8 + column;
+		//a pawn of by attacks the square if a pawn of the other player on the square would attack the pawn
+		if ((Attacks.pawn(by.next(), square) & bitboards[PieceKind.PAWN.code(by)]) != 0
+				|| (Attacks.knight(square) & bitboards[PieceKind.KNIGHT.code(by)]) != 0
+				|| (Attacks.king(square) & bitboards[PieceKind.KING.code(by)]) != 0)
+			return true;
+		long queens = bitboards[PieceKind.QUEEN.code(by)];
+		long straight = bitboards[PieceKind.ROOK.code(by)] | queens;
+		long diagonal = bitboards[PieceKind.BISHOP.code(by)] | queens;
+		long occupied = occupancy[0] | occupancy[1];
+		return (straight != 0 && (Magic.rook(square, occupied) & straight) != 0)
+				|| (diagonal != 0 && (Magic.bishop(square, occupied) & diagonal) != 0);
+	}
+
+	//adds piece at square to the bitboards and the evaluation
+	private void place(IChessPiece piece, int square) {
+		if (piece != null) {
+			long bit = 1L << square;
+			bitboards[piece.kind().code(piece.player())] |= bit;
+			occupancy[piece.player().ordinal()] |= bit;
+			evaluation.add(piece, square);
 		}
-		//go through all pieces on the board, if they are of your color
-		for(int i = 0; i < 8; i++){
-			for(int i2 = 0; i2 < 8 ; i2++){
-				Move move = new Move(i,i2,y,x);
-				if(board[i][i2] != null && board[i][i2].player() != p && board[i][i2].isValidMove(move,board)){
-					valid = true;
-				}
-			}
+	}
+
+	//takes piece at square off the bitboards and the evaluation
+	private void lift(IChessPiece piece, int square) {
+		if (piece != null) {
+			long bit = ~(1L << square);
+			bitboards[piece.kind().code(piece.player())] &= bit;
+			occupancy[piece.player().ordinal()] &= bit;
+			evaluation.remove(piece, square);
 		}
+	}
 
-		return valid;
+	private static boolean is(IChessPiece piece, Player p, PieceKind kind) {
+		return piece != null && piece.kind() == kind && piece.player() == p;
+	}
+
+	private static boolean isKing(IChessPiece piece) {
+		return piece != null && piece.kind() == PieceKind.KING;
+	}
+
+	//called when p's king leaves square; falls back to any other king p still has on the board
+	private void lostKing(Player p, int square) {
+		if (kingSquare[p.ordinal()] != square)
+			return;
+		kingSquare[p.ordinal()] = -1;
+		for (int r = 0; r < 8; r++) {
+			for (int c = 0; c < 8; c++) {
+				if (isKing(board[r][c]) && board[r][c].player() == p)
+					kingSquare[p.ordinal()] = r * 8 + c;
+			}
+		}
 	}
 
 	public Player currentPlayer() {
@@ -131,30 +658,165 @@ public class ChessModel implements IChessModel {
 
 	public void setNextPlayer() {
 		player = player.next();
+		zobrist ^= Zobrist.BLACK_TO_MOVE;
+	}
+
+	/**
+	 * Return the Zobrist key of the current position, which is maintained incrementally as the board changes.
+	 *
+	 * @return the 64-bit key of the pieces on the board and the player to move
+	 */
+	public long zobristKey() {
+		return zobrist;
+	}
+
+	/**
+	 * Compute the Zobrist key of the current position from scratch.  This should always equal
+	 * {@link #zobristKey()}, and exists to check that it does.
+	 *
+	 * @return the 64-bit key of the pieces on the board and the player to move
+	 */
+	public long computeZobristKey() {
+		long key = player == Player.BLACK ? Zobrist.BLACK_TO_MOVE : 0;
+		for (int r = 0; r < 8; r++) {
+			for (int c = 0; c < 8; c++) {
+				key ^= Zobrist.key(board[r][c], r * 8 + c);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Return the static evaluation of the position for the player to move, which is maintained incrementally as the
+	 * board changes.
+	 *
+	 * @return the material and piece-square score in centipawns, positive if the player to move is better
+	 * @see Evaluation
+	 */
+	public int evaluate() {
+		return evaluation.score(player);
+	}
+
+	/**
+	 * Evaluate the position from scratch.  This should always equal {@link #evaluate()}, and exists to check that
+	 * it does.
+	 *
+	 * @return the material and piece-square score in centipawns, positive if the player to move is better
+	 */
+	public int computeEvaluation() {
+		return Evaluation.compute(this, player);
+	}
+
+	/**
+	 * Return the game phase of the position, {@link Evaluation#MAX_PHASE} at the start and 0 with only kings and
+	 * pawns left.
+	 *
+	 * @return the phase used to blend the middlegame and endgame scores
+	 */
+	public int phase() {
+		return evaluation.phase();
+	}
+
+	/**
+	 * Return the squares holding pieces of the given kind and player.
+	 *
+	 * @param kind the kind of piece
+	 * @param p    the owner of the pieces
+	 * @return a bitboard with bit {@code row * 8 + column} set for each such piece
+	 */
+	public long bitboard(PieceKind kind, Player p) {
+		return bitboards[kind.code(p)];
+	}
+
+	public long occupied() {
+		return occupancy[0] | occupancy[1];
 	}
 
 	public void setPiece(int row, int column, IChessPiece piece) {
+		var replaced = board[row][column];
 		board[row][column] = piece;
+		lift(replaced, row * 8 + column);
+		place(piece, row * 8 + column);
+		zobrist ^= Zobrist.key(replaced, row * 8 + column) ^ Zobrist.key(piece, row * 8 + column);
+		if (isKing(replaced))
+			lostKing(replaced.player(), row * 8 + column);
+		if (isKing(piece))
+			kingSquare[piece.player().ordinal()] = row * 8 + column;
 	}
 
+	/**
+	 * Return the search engine used by {@link #AI()}, so its depth and node budget can be configured.
+	 *
+	 * @return this model's search engine
+	 */
+	public Search engine() {
+		if (engine == null)
+			engine = new Search(this);
+		return engine;
+	}
+
+	/**
+	 * Set the opening book {@link #AI()} plays from while the position is in it.  Books are read-only, so one can be
+	 * shared by any number of models.
+	 *
+	 * @param book the book, or {@code null} to always search
+	 */
+	public void setBook(PolyglotBook book) {
+		this.book = book;
+	}
+
+	public PolyglotBook book() {
+		return book;
+	}
+
+	/**
+	 * Set the endgame tablebase {@link #isComplete(Player)} and the search consult for the positions it covers.
+	 *
+	 * @param tablebase the tablebase, or {@code null} to always work positions out
+	 */
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	public Tablebase tablebase() {
+		return tablebase;
+	}
+
+	/**
+	 * Return a move for the current player from the opening book, chosen at random by the book's weights.
+	 *
+	 * @return the {@link PackedMove packed move}, or {@code 0} if there is no book, the position isn't in it, or
+	 *         the book's move isn't legal here
+	 */
+	public int bookMove() {
+		if (book == null)
+			return 0;
+		int move = book.probe(PolyglotKey.of(this), ThreadLocalRandom.current());
+		if (move == 0)
+			return 0;
+		//a different position with the same key could have put an illegal move in the book
+		int count = legalMoves(player, scratch);
+		for (int i = 0; i < count; i++) {
+			if (PackedMove.key(scratch[i]) == PackedMove.key(move))
+				return scratch[i];
+		}
+		return 0;
+	}
+
+	/**
+	 * Play a move from the opening book if the position is in it, otherwise search for the best move of the current
+	 * player within the engine's budget and make it.  Does nothing if the current player has no legal move.  A
+	 * {@link Search#stop()} of the {@link #engine() engine} holds until {@link Search#clearStop()}, so a caller that
+	 * runs this on another thread clears it before handing over.
+	 */
 	public void AI() {
-		/*
-		 * Write a simple AI set of rules in the following order.
-		 * a. Check to see if you are in check.
-		 * 		i. If so, get out of check by moving the king or placing a piece to block the check
-		 *
-		 * b. Attempt to put opponent into check (or checkmate).
-		 * 		i. Attempt to put opponent into check without losing your piece
-		 *		ii. Perhaps you have won the game.
-		 *
-		 *c. Determine if any of your pieces are in danger,
-		 *		i. Move them if you can.
-		 *		ii. Attempt to protect that piece.
-		 *
-		 *d. Move a piece (pawns first) forward toward opponent king
-		 *		i. check to see if that piece is in danger of being removed, if so, move a different piece.
-		 */
-
-	}
-
-}
\ No newline at end of file
+		int move = bookMove();
+		if (move == 0) {
+			engine().search();
+			move = engine().bestMove();
+		}
+		if (move != 0)
+			makeMove(move);
+	}
+
+}
@@ -0,0 +1,201 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the piece validators and the model queries, run on fixed middlegame and endgame positions.
+ *
+ * Run {@link #main(String[])} (with JMH on the classpath) to get ops/sec for every benchmark together with the
+ * allocation rate reported by the GC profiler ({@code gc.alloc.rate.norm} is bytes per operation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChessModelBenchmark {
+
+	//board rows from row 0 (black's back rank) to row 7, upper case for white, '.' for an empty square
+	private static final String[] MIDDLEGAME = {
+			"r.bq.rk.",
+			"pp..bppp",
+			"..np.n..",
+			"..p.p...",
+			"..B.P...",
+			"..PP.N..",
+			"PP...PPP",
+			"RNBQ.RK.",
+	};
+	private static final String[] ENDGAME = {
+			"........",
+			"..k..p..",
+			".p..p...",
+			"...r....",
+			"..P..N..",
+			".P...K..",
+			"......P.",
+			"...R....",
+	};
+
+	@Param({"middlegame", "endgame"})
+	public String position;
+
+	private ChessModel model;
+	private IChessPiece[][] board;
+	//every from/to pair of the position's pieces, grouped by piece type
+	private Move[] kingMoves;
+	private Move[] knightMoves;
+	private Move[] pawnMoves;
+	private Move[] rookMoves;
+	private Move[] queenMoves;
+	//a fixed game from the starting position
+	private Move[] game;
+
+	@Setup
+	public void setup() {
+		model = load(position.equals("middlegame") ? MIDDLEGAME : ENDGAME);
+		board = new IChessPiece[8][8];
+		for (int r = 0; r < 8; r++)
+			for (int c = 0; c < 8; c++)
+				board[r][c] = model.pieceAt(r, c);
+		kingMoves = candidates(PieceKind.KING);
+		knightMoves = candidates(PieceKind.KNIGHT);
+		pawnMoves = candidates(PieceKind.PAWN);
+		rookMoves = candidates(PieceKind.ROOK);
+		queenMoves = candidates(PieceKind.QUEEN);
+		game = randomGame(120, 2024);
+	}
+
+	@Benchmark
+	public void kingIsValidMove(Blackhole blackhole) {
+		validate(kingMoves, blackhole);
+	}
+
+	@Benchmark
+	public void knightIsValidMove(Blackhole blackhole) {
+		validate(knightMoves, blackhole);
+	}
+
+	@Benchmark
+	public void pawnIsValidMove(Blackhole blackhole) {
+		validate(pawnMoves, blackhole);
+	}
+
+	@Benchmark
+	public void rookIsValidMove(Blackhole blackhole) {
+		validate(rookMoves, blackhole);
+	}
+
+	@Benchmark
+	public void queenIsValidMove(Blackhole blackhole) {
+		validate(queenMoves, blackhole);
+	}
+
+	@Benchmark
+	public void inCheck(Blackhole blackhole) {
+		blackhole.consume(model.inCheck(Player.WHITE));
+		blackhole.consume(model.inCheck(Player.BLACK));
+	}
+
+	@Benchmark
+	public boolean isComplete() {
+		return model.isComplete(model.currentPlayer());
+	}
+
+	//replays the game the way the panel drives the model, without the panel
+	@Benchmark
+	public ChessModel gameReplay() {
+		ChessModel replay = new ChessModel();
+		for (Move move : game) {
+			if (replay.isValidMove(move)) {
+				replay.move(move);
+				replay.setNextPlayer();
+			}
+			if (replay.inCheck(Player.WHITE))
+				replay.isComplete(Player.WHITE);
+			if (replay.inCheck(Player.BLACK))
+				replay.isComplete(Player.BLACK);
+		}
+		return replay;
+	}
+
+	private void validate(Move[] moves, Blackhole blackhole) {
+		for (Move move : moves)
+			blackhole.consume(board[move.fromRow][move.fromColumn].isValidMove(move, board));
+	}
+
+	private Move[] candidates(PieceKind kind) {
+		List<Move> moves = new ArrayList<>();
+		for (int r = 0; r < 8; r++)
+			for (int c = 0; c < 8; c++)
+				if (board[r][c] != null && board[r][c].kind() == kind)
+					for (int to = 0; to < 64; to++)
+						moves.add(new Move(r, c, to / 8, to % 8));
+		return moves.toArray(new Move[0]);
+	}
+
+	private static Move[] randomGame(int plies, long seed) {
+		Random random = new Random(seed);
+		ChessModel model = new ChessModel();
+		List<Move> game = new ArrayList<>();
+		for (int i = 0; i < plies && !model.isComplete(model.currentPlayer()); i++) {
+			List<Move> moves = model.legalMoves(model.currentPlayer());
+			Move move = moves.get(random.nextInt(moves.size()));
+			model.makeMove(move);
+			game.add(move);
+		}
+		return game.toArray(new Move[0]);
+	}
+
+	private static ChessModel load(String[] rows) {
+		ChessModel model = new ChessModel();
+		for (int r = 0; r < 8; r++) {
+			for (int c = 0; c < 8; c++) {
+				char ch = rows[r].charAt(c);
+				Player p = Character.isUpperCase(ch) ? Player.WHITE : Player.BLACK;
+				IChessPiece piece;
+				switch (Character.toLowerCase(ch)) {
+					case 'p': piece = ChessPiece.of(PieceKind.PAWN, p); break;
+					case 'n': piece = ChessPiece.of(PieceKind.KNIGHT, p); break;
+					case 'b': piece = ChessPiece.of(PieceKind.BISHOP, p); break;
+					case 'r': piece = ChessPiece.of(PieceKind.ROOK, p); break;
+					case 'q': piece = ChessPiece.of(PieceKind.QUEEN, p); break;
+					case 'k': piece = ChessPiece.of(PieceKind.KING, p); break;
+					default: piece = null;
+				}
+				model.setPiece(r, c, piece);
+			}
+		}
+		return model;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ChessModelBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
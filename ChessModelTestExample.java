@@ -1071,4 +1071,732 @@ public class ChessModelTestExample {
         model.setPiece(INITIAL_ROW , INITIAL_COL - 1, wPawn6);
         Assert.assertTrue(model.isValidMove(new Move(INITIAL_ROW, INITIAL_COL, INITIAL_ROW , INITIAL_COL - 1)));
     }
+
+    @Test
+    public void bitboardModelMatchesChessModelTest() {
+        java.util.Random random = new java.util.Random(42);
+        for (int position = 0; position < 50; position++) {
+            ChessModel model = initClearModel();
+            BitboardChessModel bitboards = new BitboardChessModel();
+            for (int r = 0; r < 8; r++)
+                for (int c = 0; c < 8; c++)
+                    bitboards.setPiece(r, c, null);
+
+            // scatter a king for each side and some random pieces
+            for (int i = 0; i < 14; i++) {
+                Player p = i % 2 == 0 ? Player.WHITE : Player.BLACK;
+                IChessPiece piece;
+                switch (i < 2 ? 5 : random.nextInt(5)) {
+                    case 0: piece = new Pawn(p); break;
+                    case 1: piece = new Knight(p); break;
+                    case 2: piece = new Bishop(p); break;
+                    case 3: piece = new Rook(p); break;
+                    case 4: piece = new Queen(p); break;
+                    default: piece = new King(p); break;
+                }
+                // pawns never stand on the first or last row
+                int r = piece instanceof Pawn ? 1 + random.nextInt(6) : random.nextInt(8);
+                int c = random.nextInt(8);
+                if (model.pieceAt(r, c) == null) {
+                    model.setPiece(r, c, piece);
+                    bitboards.setPiece(r, c, piece);
+                    Assert.assertSame(piece, bitboards.pieceAt(r, c));
+                }
+            }
+
+            for (int from = 0; from < 64; from++)
+                for (int to = 0; to < 64; to++) {
+                    Move m = new Move(from / 8, from % 8, to / 8, to % 8);
+                    Assert.assertEquals(m.toString(), model.isValidMove(m), bitboards.isValidMove(m));
+                }
+            Assert.assertEquals(model.inCheck(Player.WHITE), bitboards.inCheck(Player.WHITE));
+            Assert.assertEquals(model.inCheck(Player.BLACK), bitboards.inCheck(Player.BLACK));
+            Assert.assertEquals(model.isComplete(Player.WHITE), bitboards.isComplete(Player.WHITE));
+            Assert.assertEquals(model.isComplete(Player.BLACK), bitboards.isComplete(Player.BLACK));
+        }
+    }
+
+    @Test
+    public void legalMovesTest() {
+        ChessModel model = new ChessModel();
+        Assert.assertEquals(20, model.legalMoves(Player.WHITE).size());
+        Assert.assertEquals(20, model.legalMoves(Player.BLACK).size());
+        Assert.assertFalse(model.isComplete(Player.WHITE));
+
+        // a pinned rook may only move along the pin
+        model = initClearModel();
+        model.setPiece(7, 4, new King(Player.WHITE));
+        model.setPiece(5, 4, new Rook(Player.WHITE));
+        model.setPiece(0, 4, new Rook(Player.BLACK));
+        model.setPiece(0, 0, new King(Player.BLACK));
+        for (Move m : model.legalMoves(Player.WHITE))
+            if (m.fromRow == 5)
+                Assert.assertEquals(4, m.toColumn);
+    }
+
+    @Test
+    public void isCompleteTest() {
+        // checkmate: the queen is protected by the king
+        ChessModel model = initClearModel();
+        model.setPiece(0, 7, new King(Player.BLACK));
+        model.setPiece(1, 6, new Queen(Player.WHITE));
+        model.setPiece(2, 5, new King(Player.WHITE));
+        Assert.assertTrue(model.inCheck(Player.BLACK));
+        Assert.assertTrue(model.isComplete(Player.BLACK));
+        Assert.assertFalse(model.isComplete(Player.WHITE));
+
+        // stalemate: not in check, but no legal move
+        model.setPiece(1, 6, null);
+        model.setPiece(2, 5, null);
+        model.setPiece(2, 6, new Queen(Player.WHITE));
+        model.setPiece(7, 0, new King(Player.WHITE));
+        Assert.assertFalse(model.inCheck(Player.BLACK));
+        Assert.assertTrue(model.isComplete(Player.BLACK));
+
+        // in check, but the king can step away
+        model.setPiece(2, 6, null);
+        model.setPiece(4, 7, new Rook(Player.WHITE));
+        Assert.assertTrue(model.inCheck(Player.BLACK));
+        Assert.assertFalse(model.isComplete(Player.BLACK));
+    }
+
+    @Test
+    public void inCheckFollowsKingTest() {
+        ChessModel model = initClearModel();
+        model.setPiece(7, 4, new King(Player.WHITE));
+        model.setPiece(0, 3, new Rook(Player.BLACK));
+        model.setPiece(5, 1, new Knight(Player.BLACK));
+        Assert.assertFalse(model.inCheck(Player.WHITE));
+
+        // the king walks onto the rook's file
+        model.move(new Move(7, 4, 7, 3));
+        Assert.assertTrue(model.inCheck(Player.WHITE));
+        Assert.assertTrue(model.isAttacked(7, 3, Player.BLACK));
+
+        // a piece in between blocks the rook
+        model.setPiece(3, 3, new Pawn(Player.WHITE));
+        Assert.assertFalse(model.inCheck(Player.WHITE));
+
+        // the knight covers [6][3]
+        model.move(new Move(7, 3, 6, 3));
+        Assert.assertTrue(model.inCheck(Player.WHITE));
+
+        // no king, no check
+        model.setPiece(6, 3, null);
+        Assert.assertFalse(model.inCheck(Player.WHITE));
+    }
+
+    @Test
+    public void makeUnmakeMoveTest() {
+        ChessModel model = new ChessModel();
+        IChessPiece[][] before = new IChessPiece[8][8];
+        for (int r = 0; r < 8; r++)
+            for (int c = 0; c < 8; c++)
+                before[r][c] = model.pieceAt(r, c);
+
+        model.makeMove(new Move(6, 4, 4, 4));
+        Assert.assertEquals(Player.BLACK, model.currentPlayer());
+        model.makeMove(new Move(1, 3, 3, 3));
+        model.makeMove(new Move(4, 4, 3, 3));
+        Assert.assertNull(model.pieceAt(4, 4));
+        Assert.assertEquals("Pawn", model.pieceAt(3, 3).type());
+        Assert.assertEquals(Player.WHITE, model.pieceAt(3, 3).player());
+        Assert.assertEquals(3, model.undoDepth());
+
+        model.unmakeMove();
+        model.unmakeMove();
+        model.unmakeMove();
+        Assert.assertEquals(0, model.undoDepth());
+        Assert.assertEquals(Player.WHITE, model.currentPlayer());
+        for (int r = 0; r < 8; r++)
+            for (int c = 0; c < 8; c++)
+                Assert.assertSame(before[r][c], model.pieceAt(r, c));
+    }
+
+    @Test
+    public void zobristKeyTest() {
+        ChessModel model = new ChessModel();
+        long start = model.zobristKey();
+        Assert.assertEquals(model.computeZobristKey(), start);
+
+        // play a few moves, checking the incremental key against a full recompute
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 40 && !model.isComplete(model.currentPlayer()); i++) {
+            java.util.List<Move> moves = model.legalMoves(model.currentPlayer());
+            model.makeMove(moves.get(random.nextInt(moves.size())));
+            Assert.assertEquals(model.computeZobristKey(), model.zobristKey());
+        }
+        while (model.undoDepth() > 0) {
+            model.unmakeMove();
+            Assert.assertEquals(model.computeZobristKey(), model.zobristKey());
+        }
+        Assert.assertEquals(start, model.zobristKey());
+
+        // the same position reached by different move orders has the same key
+        model.makeMove(new Move(7, 1, 5, 2));
+        model.makeMove(new Move(0, 1, 2, 2));
+        model.makeMove(new Move(7, 6, 5, 5));
+        long key = model.zobristKey();
+        model.unmakeMove();
+        model.unmakeMove();
+        model.unmakeMove();
+        model.makeMove(new Move(7, 6, 5, 5));
+        model.makeMove(new Move(0, 1, 2, 2));
+        model.makeMove(new Move(7, 1, 5, 2));
+        Assert.assertEquals(key, model.zobristKey());
+
+        model.setPiece(4, 4, new Queen(Player.WHITE));
+        model.setNextPlayer();
+        Assert.assertEquals(model.computeZobristKey(), model.zobristKey());
+        Assert.assertNotEquals(key, model.zobristKey());
+    }
+
+    @Test
+    public void aiFindsMateTest() {
+        // white mates with the rook along the back row
+        ChessModel model = initClearModel();
+        model.setPiece(0, 6, new King(Player.BLACK));
+        model.setPiece(1, 5, new Pawn(Player.BLACK));
+        model.setPiece(1, 6, new Pawn(Player.BLACK));
+        model.setPiece(1, 7, new Pawn(Player.BLACK));
+        model.setPiece(7, 0, new Rook(Player.WHITE));
+        model.setPiece(7, 6, new King(Player.WHITE));
+        long key = model.zobristKey();
+
+        Move best = model.engine().search();
+        Assert.assertEquals(key, model.zobristKey());
+        Assert.assertEquals(0, best.toRow);
+        Assert.assertEquals(0, best.toColumn);
+        Assert.assertTrue(model.engine().score() >= Search.MATE - Search.MAX_PLY);
+
+        model.AI();
+        Assert.assertEquals(Player.BLACK, model.currentPlayer());
+        Assert.assertTrue(model.isComplete(Player.BLACK));
+    }
+
+    @Test
+    public void aiStopsAtNodeLimitTest() {
+        ChessModel model = new ChessModel();
+        model.engine().setDepthLimit(20);
+        model.engine().setNodeLimit(5000);
+        model.AI();
+        Assert.assertTrue(model.engine().nodes() <= 5000);
+        Assert.assertEquals(Player.BLACK, model.currentPlayer());
+        Assert.assertEquals(1, model.undoDepth());
+    }
+
+    @Test
+    public void transpositionTableTest() {
+        TranspositionTable table = new TranspositionTable(1 << 16);
+        Assert.assertTrue(table.sizeInBytes() <= 1 << 16);
+
+        long key = 0x123456789ABCDEFL;
+        Assert.assertEquals(0, table.probe(key));
+        table.store(key, 0x1234, -Search.MATE + 3, 7, TranspositionTable.UPPER);
+        long entry = table.probe(key);
+        Assert.assertEquals(0x1234, TranspositionTable.move(entry));
+        Assert.assertEquals(-Search.MATE + 3, TranspositionTable.score(entry));
+        Assert.assertEquals(7, TranspositionTable.depth(entry));
+        Assert.assertEquals(TranspositionTable.UPPER, TranspositionTable.bound(entry));
+
+        // a shallower result for another position in the same bucket goes to the always-replace slot
+        long other = key + ((long) table.capacity() << 31);
+        table.store(other, 1, 50, 2, TranspositionTable.EXACT);
+        Assert.assertEquals(7, TranspositionTable.depth(table.probe(key)));
+        Assert.assertEquals(50, TranspositionTable.score(table.probe(other)));
+    }
+
+    @Test
+    public void parallelSearchTest() {
+        ChessModel model = initClearModel();
+        model.setPiece(0, 6, new King(Player.BLACK));
+        model.setPiece(1, 5, new Pawn(Player.BLACK));
+        model.setPiece(1, 6, new Pawn(Player.BLACK));
+        model.setPiece(1, 7, new Pawn(Player.BLACK));
+        model.setPiece(7, 0, new Rook(Player.WHITE));
+        model.setPiece(7, 6, new King(Player.WHITE));
+        model.setPiece(6, 3, new Knight(Player.BLACK));
+        long key = model.zobristKey();
+
+        Search search = new Search(model, new TranspositionTable(1 << 20));
+        search.setThreads(4);
+        search.setDepthLimit(5);
+        Move best = search.search();
+        Assert.assertEquals(key, model.zobristKey());
+        Assert.assertNotNull(best);
+        Assert.assertTrue(search.nodes() > 0);
+        // the table counters of all four threads are summed
+        Assert.assertTrue(search.tableHits() > 0 && search.tableHits() <= search.tableProbes());
+        Assert.assertTrue(search.tableStores() > 0);
+        search.setThreads(1);
+    }
+
+    @Test
+    public void perftTest() {
+        ChessModel model = new ChessModel();
+        Assert.assertEquals(20, Perft.perft(model, 1));
+        Assert.assertEquals(400, Perft.perft(model, 2));
+        Assert.assertEquals(8902, Perft.perft(model, 3));
+
+        int[] rootMoves = new int[ChessModel.MAX_MOVES];
+        rootMoves = java.util.Arrays.copyOf(rootMoves, model.legalMoves(Player.WHITE, rootMoves));
+        long[] counts = Perft.divide(model, 3, rootMoves, new java.util.concurrent.ForkJoinPool(2));
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        Assert.assertEquals(8902, total);
+        Assert.assertEquals("e2e4", new Move(6, 4, 4, 4).toCoordinates());
+    }
+
+    @Test
+    public void queenIsValidMoveAllocatesNothingTest() {
+        ChessModel model = new ChessModel();
+        model.setPiece(4, 3, new Queen(Player.WHITE));
+        IChessPiece[][] board = new IChessPiece[8][8];
+        for (int r = 0; r < 8; r++)
+            for (int c = 0; c < 8; c++)
+                board[r][c] = model.pieceAt(r, c);
+        Move[] moves = new Move[64];
+        for (int to = 0; to < 64; to++)
+            moves[to] = new Move(4, 3, to / 8, to % 8);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        int valid = 0;
+        for (int i = 0; i < 20000; i++)
+            for (Move m : moves)
+                if (board[4][3].isValidMove(m, board))
+                    valid++;
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 20000; i++)
+            for (Move m : moves)
+                if (board[4][3].isValidMove(m, board))
+                    valid++;
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        Assert.assertEquals(2 * 20000 * 19, valid);
+        // allow for the measuring call itself, but not for anything per validation
+        Assert.assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void sharedPiecesTest() {
+        Assert.assertSame(ChessPiece.of(PieceKind.ROOK, Player.WHITE), ChessPiece.of(PieceKind.ROOK, Player.WHITE));
+        Assert.assertEquals(PieceKind.QUEEN, ChessPiece.of(PieceKind.QUEEN, Player.BLACK).kind());
+        Assert.assertEquals(Player.BLACK, ChessPiece.of(PieceKind.QUEEN, Player.BLACK).player());
+        Assert.assertEquals("Knight", new Knight(Player.WHITE).type());
+
+        // the starting position holds one object per kind and player
+        ChessModel model = new ChessModel();
+        Assert.assertSame(model.pieceAt(6, 0), model.pieceAt(6, 7));
+        Assert.assertSame(model.pieceAt(0, 0), model.pieceAt(0, 7));
+        Assert.assertSame(ChessPiece.of(PieceKind.KING, Player.BLACK), model.pieceAt(0, 4));
+    }
+
+    @Test
+    public void packedMoveTest() {
+        int move = PackedMove.of(6 * 8 + 4, 4 * 8 + 4, PackedMove.DOUBLE_PUSH);
+        Assert.assertEquals(52, PackedMove.from(move));
+        Assert.assertEquals(36, PackedMove.to(move));
+        Assert.assertNull(PackedMove.promotion(move));
+        Assert.assertEquals("e2e4", PackedMove.toString(move));
+        Move unpacked = PackedMove.toMove(move);
+        Assert.assertEquals(PackedMove.key(move), PackedMove.of(unpacked));
+
+        //a white pawn one step from the last row, with a black rook to capture
+        ChessModel model = new ChessModel();
+        model.setPiece(0, 0, null);
+        model.setPiece(1, 0, new Pawn(Player.WHITE));
+        long key = model.zobristKey();
+        int[] moves = new int[ChessModel.MAX_MOVES];
+        int count = model.legalMoves(Player.WHITE, moves);
+        int promotions = 0;
+        for (int i = 0; i < count; i++) {
+            if (PackedMove.promotion(moves[i]) != null) {
+                promotions++;
+                model.makeMove(moves[i]);
+                Assert.assertEquals(PackedMove.promotion(moves[i]), model.pieceAt(0, PackedMove.to(moves[i]) & 7).kind());
+                Assert.assertEquals(model.computeZobristKey(), model.zobristKey());
+                model.unmakeMove();
+                Assert.assertEquals(PieceKind.PAWN, model.pieceAt(1, 0).kind());
+            }
+        }
+        //push to a8 and capture on b8, four pieces each
+        Assert.assertEquals(8, promotions);
+        Assert.assertEquals(key, model.zobristKey());
+
+        //the Move based API, which used to leave a pawn on the last row a pawn, now promotes to a queen
+        model.makeMove(new Move(1, 0, 0, 1));
+        Assert.assertTrue(model.pieceAt(0, 1) instanceof Queen);
+        Assert.assertEquals(Player.WHITE, model.pieceAt(0, 1).player());
+        Assert.assertEquals(model.computeZobristKey(), model.zobristKey());
+        model.unmakeMove();
+        Assert.assertTrue(model.pieceAt(1, 0) instanceof Pawn);
+        Assert.assertEquals(key, model.zobristKey());
+        model.move(new Move(1, 0, 0, 1));
+        Assert.assertEquals(PieceKind.QUEEN, model.pieceAt(0, 1).kind());
+        //a black pawn reaching row 7 too, in both models
+        model = new ChessModel();
+        model.setPiece(7, 7, null);
+        model.setPiece(6, 7, new Pawn(Player.BLACK));
+        model.move(new Move(6, 7, 7, 7));
+        Assert.assertTrue(model.pieceAt(7, 7) instanceof Queen);
+        BitboardChessModel bitboards = new BitboardChessModel();
+        bitboards.setPiece(7, 7, null);
+        bitboards.setPiece(6, 7, new Pawn(Player.BLACK));
+        bitboards.move(new Move(6, 7, 7, 7));
+        Assert.assertEquals(PieceKind.QUEEN, bitboards.pieceAt(7, 7).kind());
+        Assert.assertEquals(Player.BLACK, bitboards.pieceAt(7, 7).player());
+    }
+
+    @Test
+    public void attackTablesTest() {
+        Assert.assertEquals(2, Long.bitCount(Attacks.knight(0)));
+        Assert.assertEquals(8, Long.bitCount(Attacks.knight(4 * 8 + 4)));
+        Assert.assertEquals(3, Long.bitCount(Attacks.king(63)));
+        //a white pawn on e2 captures on d3 and f3, a black pawn on a7 only on b6
+        Assert.assertEquals(1L << (5 * 8 + 3) | 1L << (5 * 8 + 5), Attacks.pawn(Player.WHITE, 6 * 8 + 4));
+        Assert.assertEquals(1L << (2 * 8 + 1), Attacks.pawn(Player.BLACK, 8));
+
+        //the tables agree with the pieces' own rules on an empty board
+        IChessPiece[][] board = new IChessPiece[8][8];
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                Move move = new Move(from >> 3, from & 7, to >> 3, to & 7);
+                board[from >> 3][from & 7] = new Knight(Player.WHITE);
+                Assert.assertEquals(new Knight(Player.WHITE).isValidMove(move, board), Attacks.contains(Attacks.knight(from), to));
+                board[from >> 3][from & 7] = null;
+            }
+        }
+
+        ChessModel model = new ChessModel();
+        model.setPiece(3, 3, new Knight(Player.BLACK));
+        Assert.assertTrue(model.isAttacked(5, 4, Player.BLACK));
+        Assert.assertTrue(model.isAttacked(5, 4, Player.WHITE));
+        Assert.assertFalse(model.isAttacked(4, 4, Player.BLACK));
+    }
+
+    @Test
+    public void magicAttacksTest() {
+        //a rook on a1 with blockers on a4 and d1 sees a2-a4 and b1-d1
+        long occupied = 1L << (4 * 8) | 1L << (7 * 8 + 3);
+        long expected = 1L << (6 * 8) | 1L << (5 * 8) | 1L << (4 * 8) | 1L << (7 * 8 + 1) | 1L << (7 * 8 + 2) | 1L << (7 * 8 + 3);
+        Assert.assertEquals(expected, Magic.rook(7 * 8, occupied));
+        Assert.assertEquals(13, Long.bitCount(Magic.bishop(4 * 8 + 4, 0)));
+        Assert.assertEquals(Magic.rook(27, occupied) | Magic.bishop(27, occupied), Magic.queen(27, occupied));
+        Assert.assertTrue(Magic.sizeInBytes() < 1 << 20);
+
+        //the lookups agree with the pieces' own rules for random boards
+        java.util.Random random = new java.util.Random(15);
+        for (int i = 0; i < 200; i++) {
+            IChessPiece[][] board = new IChessPiece[8][8];
+            long blockers = random.nextLong() & random.nextLong();
+            for (int square = 0; square < 64; square++) {
+                if ((blockers >>> square & 1) != 0)
+                    board[square >> 3][square & 7] = new Pawn(Player.BLACK);
+            }
+            int from = random.nextInt(64);
+            board[from >> 3][from & 7] = new Queen(Player.WHITE);
+            blockers &= ~(1L << from);
+            for (int to = 0; to < 64; to++) {
+                Move move = new Move(from >> 3, from & 7, to >> 3, to & 7);
+                Assert.assertEquals(board[from >> 3][from & 7].isValidMove(move, board), Attacks.contains(Magic.queen(from, blockers), to));
+            }
+        }
+    }
+
+    @Test
+    public void evaluationTest() {
+        ChessModel model = new ChessModel();
+        Assert.assertEquals(0, model.evaluate());
+        Assert.assertEquals(Evaluation.MAX_PHASE, model.phase());
+
+        //random game, the incremental score always matches a full rescan and unmaking restores it
+        java.util.Random random = new java.util.Random(16);
+        int[] moves = new int[ChessModel.MAX_MOVES];
+        for (int ply = 0; ply < 80; ply++) {
+            int count = model.legalMoves(model.currentPlayer(), moves);
+            if (count == 0)
+                break;
+            int before = model.evaluate();
+            int move = moves[random.nextInt(count)];
+            model.makeMove(move);
+            Assert.assertEquals(model.computeEvaluation(), model.evaluate());
+            model.unmakeMove();
+            Assert.assertEquals(before, model.evaluate());
+            model.makeMove(move);
+        }
+        ChessModel copy = new ChessModel(model);
+        Assert.assertEquals(model.evaluate(), copy.evaluate());
+
+        //a missing queen costs the side without it, and moves the game towards the endgame
+        model = new ChessModel();
+        model.setPiece(0, 3, null);
+        Assert.assertTrue(model.evaluate() > 800);
+        Assert.assertEquals(Evaluation.MAX_PHASE - 4, model.phase());
+        model.setNextPlayer();
+        Assert.assertTrue(model.evaluate() < -800);
+    }
+
+    @Test
+    public void polyglotBookTest() throws java.io.IOException {
+        ChessModel model = new ChessModel();
+        int e4 = model.encode(new Move(6, 4, 4, 4));
+        int d4 = model.encode(new Move(6, 3, 4, 3));
+        long key = PolyglotKey.of(model);
+        PolyglotBook.Writer writer = new PolyglotBook.Writer();
+        writer.add(key, e4, 3);
+        writer.add(key, d4, 1);
+        writer.add(key, e4, 1);
+        writer.add(key ^ 1, d4, 5);
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("book", ".bin");
+        try {
+            writer.write(file);
+            PolyglotBook book = PolyglotBook.open(file);
+            Assert.assertSame(book, PolyglotBook.open(file));
+            Assert.assertEquals(3, book.size());
+            Assert.assertEquals(2, book.moves(key).length);
+            Assert.assertEquals(0, book.moves(12345).length);
+
+            //e4 has weight 4 of 5
+            java.util.Random random = new java.util.Random(17);
+            int e4Count = 0;
+            for (int i = 0; i < 1000; i++) {
+                int move = book.probe(key, random);
+                Assert.assertTrue(move == e4 || move == d4);
+                if (move == e4)
+                    e4Count++;
+            }
+            Assert.assertTrue(e4Count > 700 && e4Count < 900);
+
+            model.setBook(book);
+            model.engine().setNodeLimit(1);
+            model.AI();
+            Assert.assertNotNull(model.pieceAt(4, 4) != null ? model.pieceAt(4, 4) : model.pieceAt(4, 3));
+            Assert.assertEquals(Player.BLACK, model.currentPlayer());
+            Assert.assertEquals(0, model.bookMove());
+
+            //rewriting the file leaves the open book readable
+            writer.write(file);
+            Assert.assertEquals(2, book.moves(key).length);
+            Assert.assertTrue(book != PolyglotBook.open(file));
+        } finally {
+            java.nio.file.Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void polyglotKeyTest() {
+        //the keys published with the Polyglot book format
+        ChessModel model = new ChessModel();
+        Assert.assertEquals(0x463b96181691fc9cL, PolyglotKey.of(model));
+        model.makeMove(new Move(6, 4, 4, 4));
+        Assert.assertEquals(0x823c9b50fd114196L, PolyglotKey.of(model));
+        model.makeMove(new Move(1, 3, 3, 3));
+        Assert.assertEquals(0x0756b94461c50fb0L, PolyglotKey.of(model));
+        model.makeMove(new Move(4, 4, 3, 4));
+        Assert.assertEquals(0x662fafb965db29d4L, PolyglotKey.of(model));
+        //f5 sets an en passant file, which this model doesn't have, so only the keys after it are compared
+        model.makeMove(new Move(1, 5, 3, 5));
+        model.makeMove(new Move(7, 4, 6, 4));
+        Assert.assertEquals(0x652a607ca3f242c1L, PolyglotKey.of(model));
+        model.makeMove(new Move(0, 4, 1, 5));
+        Assert.assertEquals(0x00fdd303c946bdd9L, PolyglotKey.of(model));
+    }
+
+    @Test
+    public void tablebaseTest() throws java.io.IOException {
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory("tablebase");
+        try {
+            Tablebase.write(directory);
+            Tablebase tablebase = Tablebase.open(directory);
+
+            //black king a8, white king b6, white rook h1: Rh8 mates
+            ChessModel model = new ChessModel();
+            model.setFen("k7/8/1K6/8/8/8/8/7R w - - 0 1");
+            int entry = tablebase.probe(model, Player.WHITE);
+            Assert.assertEquals(Tablebase.WIN, Tablebase.wdl(entry));
+            Assert.assertEquals(1, Tablebase.movesToMate(entry));
+            Assert.assertEquals(Tablebase.NOT_FOUND, tablebase.probe(new ChessModel(), Player.WHITE));
+
+            //the same ending with the colors swapped is looked up through the flipped board
+            ChessModel mirrored = new ChessModel();
+            mirrored.setFen("7r/8/8/8/8/1k6/8/K7 b - - 0 1");
+            Assert.assertEquals(entry, tablebase.probe(mirrored, Player.BLACK));
+
+            model.setTablebase(tablebase);
+            model.engine().setDepthLimit(2);
+            model.AI();
+            Assert.assertTrue(model.pieceAt(0, 7) instanceof Rook);
+            Assert.assertEquals(0, Tablebase.movesToMate(tablebase.probe(model, Player.BLACK)));
+            Assert.assertTrue(model.isComplete(Player.BLACK));
+
+            //a lone king next to an undefended queen takes it
+            model.setPiece(0, 7, null);
+            model.setPiece(1, 1, new Queen(Player.WHITE));
+            model.setPiece(2, 1, null);
+            model.setPiece(7, 7, new King(Player.WHITE));
+            Assert.assertEquals(Tablebase.DRAW, Tablebase.wdl(tablebase.probe(model, Player.BLACK)));
+            Assert.assertFalse(model.isComplete(Player.BLACK));
+        } finally {
+            for (java.io.File file : directory.toFile().listFiles())
+                file.delete();
+            directory.toFile().delete();
+        }
+    }
+
+    @Test
+    public void fenTest() {
+        String start = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+        ChessModel model = new ChessModel();
+        Assert.assertEquals(start, model.toFen());
+        long key = model.zobristKey();
+        int score = model.evaluate();
+
+        model.setFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        Assert.assertEquals(Player.BLACK, model.currentPlayer());
+        Assert.assertTrue(model.pieceAt(4, 4) instanceof Pawn);
+        Assert.assertNull(model.pieceAt(6, 4));
+        Assert.assertEquals(model.computeZobristKey(), model.zobristKey());
+        Assert.assertEquals(20, model.legalMoves(Player.BLACK).size());
+
+        model.setFen(new StringBuilder(start));
+        Assert.assertEquals(key, model.zobristKey());
+        Assert.assertEquals(score, model.evaluate());
+        Assert.assertEquals(0, model.undoDepth());
+        //the king squares come from the record
+        model.setFen("4k3/8/8/8/8/8/8/4K2r w - - 0 1");
+        Assert.assertTrue(model.inCheck(Player.WHITE));
+
+        String[] invalid = {"", "8/8/8/8/8/8/8/8", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w",
+                "rnbqkbnX/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w", "4k3/8/8/8/8/8/8/4K3 w - e4 0 1",
+                "4k3/8/8/8/8/8/8/4K3 w - - 0 1 extra"};
+        //a record that fails part way leaves the position as it was
+        String fenBefore = model.toFen();
+        key = model.zobristKey();
+        score = model.evaluate();
+        for (String fen : invalid) {
+            try {
+                model.setFen(fen);
+                Assert.fail(fen);
+            } catch (IllegalArgumentException expected) {
+            }
+            Assert.assertEquals(fenBefore, model.toFen());
+            Assert.assertEquals(key, model.zobristKey());
+            Assert.assertEquals(score, model.evaluate());
+            Assert.assertTrue(model.inCheck(Player.WHITE));
+        }
+
+        //parsing allocates nothing
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < 20000; i++)
+            model.setFen(start);
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 20000; i++)
+            model.setFen(start);
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        Assert.assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void pgnImportTest() throws java.io.IOException {
+        String pgn = "[Event \"Scholar's mate\"]\n[Result \"1-0\"]\n\n"
+                + "1. e4 e5 2. Bc4 {aiming at f7} Nc6 (2... Nf6 3. d3) 3. Qh5 $2 Nf6?? 4.Qxf7# 1-0\n\n"
+                + "[Event \"Illegal\"]\n\n1. e5 e6 *\n\n"
+                + "[Event \"Castles\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. O-O *\n"
+                + "[Event \"Promotion\"]\n[SetUp \"1\"]\n[FEN \"7k/P7/8/8/8/8/8/K7 w - - 0 1\"]\n\n1. a8=Q+ Kh7 2. Qb7+ ; check\nKg6 *\n";
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("games", ".pgn");
+        try {
+            java.nio.file.Files.write(file, pgn.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1));
+            PgnImporter.Stats stats = new PgnImporter(2).importFile(file);
+            Assert.assertEquals(4, stats.games());
+            Assert.assertEquals(2, stats.valid());
+            Assert.assertEquals(1, stats.malformed());
+            Assert.assertEquals(1, stats.unsupported());
+            //7 + 0 + 6 + 4
+            Assert.assertEquals(17, stats.plies());
+        } finally {
+            java.nio.file.Files.deleteIfExists(file);
+        }
+
+        ChessModel model = new ChessModel();
+        int[] buffer = new int[ChessModel.MAX_MOVES];
+        Assert.assertEquals(7, PgnImporter.replay(model, "1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 4. Qxf7# 1-0", buffer));
+        Assert.assertTrue(model.isComplete(Player.BLACK));
+        //two knights can reach d2, so the file is needed
+        model.setFen("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1");
+        Assert.assertEquals(PackedMove.of(7 * 8 + 1, 6 * 8 + 3, 0), PackedMove.key(San.parse(model, "Nbd2", 0, 4, buffer)));
+        try {
+            San.parse(model, "Nd2", 0, 3, buffer);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void gameServerTest() throws Exception {
+        try (GameServer server = new GameServer(2)) {
+            long id = server.newGame();
+            Assert.assertEquals(GameServer.MoveStatus.ILLEGAL, server.submitMove(id, "e7e5").join());
+            Assert.assertEquals(GameServer.MoveStatus.ILLEGAL, server.submitMove(id, "e2e5").join());
+            String[] scholar = {"e2e4", "e7e5", "d1h5", "b8c6", "f1c4", "g8f6"};
+            for (String move : scholar)
+                Assert.assertEquals(GameServer.MoveStatus.MOVED, server.submitMove(id, move).join());
+            Assert.assertEquals(GameServer.MoveStatus.CHECKMATE, server.submitMove(id, new Move(3, 7, 1, 5)).join());
+            Assert.assertEquals(GameServer.MoveStatus.ILLEGAL, server.submitMove(id, "a7a6").join());
+            Assert.assertEquals(10, server.validationLatency(id).join().count());
+            Assert.assertEquals(7, server.checkLatency(id).join().count());
+
+            //the same requests over the socket
+            int port = server.listen(0);
+            try (java.net.Socket socket = new java.net.Socket(java.net.InetAddress.getLoopbackAddress(), port);
+                    java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(socket.getInputStream()));
+                    java.io.PrintWriter out = new java.io.PrintWriter(socket.getOutputStream(), true)) {
+                out.println("new 4k3/8/4K3/8/8/8/8/7R w - - 0 1");
+                String reply = in.readLine();
+                Assert.assertTrue(reply.startsWith("ok "));
+                long game = Long.parseLong(reply.substring(3));
+                out.println("move " + game + " h1h8");
+                Assert.assertEquals("ok CHECKMATE", in.readLine());
+                out.println("move " + game + " h1");
+                Assert.assertTrue(in.readLine().startsWith("error "));
+            }
+            Assert.assertEquals(2, server.gameCount());
+            Assert.assertEquals(11, server.totalLatency().join()[0].count());
+        }
+    }
+
+    @Test
+    public void uciTest() throws Exception {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        Uci uci = new Uci(new java.io.PrintStream(bytes, true));
+        uci.handle("uci");
+        uci.handle("setoption name Hash value 2");
+        uci.handle("isready");
+        uci.handle("position fen 4k3/8/4K3/8/8/8/8/7R w - - 0 1");
+        uci.handle("go depth 3");
+        uci.handle("isready");
+        //let the search finish on its own before reading its output
+        for (int i = 0; i < 1000 && !bytes.toString().contains("bestmove"); i++)
+            Thread.sleep(5);
+        Assert.assertTrue(uci.handle("stop"));
+        String output = bytes.toString();
+        Assert.assertTrue(output.contains("uciok"));
+        Assert.assertTrue(output.contains("score mate 1"));
+        Assert.assertTrue(output.contains("bestmove h1h8"));
+
+        //a stop right after go infinite isn't lost however soon it comes, and the moves of position are played
+        bytes.reset();
+        uci.handle("position startpos moves e2e4 e7e5 g1f3");
+        uci.handle("go infinite");
+        long start = System.nanoTime();
+        uci.handle("stop");
+        Assert.assertTrue(System.nanoTime() - start < 5000000000L);
+        Assert.assertTrue(bytes.toString().contains("bestmove "));
+        Assert.assertFalse(bytes.toString().contains("bestmove 0000"));
+        Assert.assertFalse(uci.handle("quit"));
+    }
 }
@@ -1,254 +1,254 @@
 package chess;
 
 import java.awt.*;
-import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.swing.*;
 
 public class ChessPanel extends JPanel {
 
-    private JButton[][] board;
+    private BoardComponent board;
     private ChessModel model;
 
-    private ImageIcon wRook;
-    private ImageIcon wBishop;
-    private ImageIcon wQueen;
-    private ImageIcon wKing;
-    private ImageIcon wPawn;
-    private ImageIcon wKnight;
-    private ImageIcon bRook;
-    private ImageIcon bBishop;
-    private ImageIcon bQueen;
-    private ImageIcon bKing;
-    private ImageIcon bPawn;
-    private ImageIcon bKnight;
-
     private boolean firstTurnFlag;
     private int fromRow;
     private int toRow;
     private int fromCol;
     private int toCol;
+    private List<Move> selectedMoves = new ArrayList<>();
     // declare other instance variables as needed
 
     private listener listener;
 
+    // check detection and engine searches run here, one at a time, on copies of the model
+    private final ExecutorService engineExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chess-engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TranspositionTable table = new TranspositionTable(16 << 20);
+    private SwingWorker<?, ?> thinking;
+    private Search search;
+
+    private JLabel statusLabel;
+    private JLabel progressLabel;
+    private JButton cancelButton;
+    private JCheckBox engineBox;
+
+    // how long the engine may think about a move
+    private static final long ENGINE_MILLIS = 3000;
+
     public ChessPanel() {
         model = new ChessModel();
-        board = new JButton[model.numRows()][model.numColumns()];
+        board = new BoardComponent();
         listener = new listener();
-        createIcons();
+        board.setSquareListener(listener);
+        board.update(model);
 
-        JPanel boardpanel = new JPanel();
         JPanel buttonpanel = new JPanel();
-        boardpanel.setLayout(new GridLayout(model.numRows(), model.numColumns(), 1, 1));
+        setLayout(new BorderLayout());
+        add(board, BorderLayout.CENTER);
+
+        statusLabel = new JLabel("White to move");
+        progressLabel = new JLabel(" ");
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> cancel());
+        engineBox = new JCheckBox("Engine plays Black");
+        engineBox.addActionListener(e -> {
+            if (thinking == null)
+                startTurn();
+        });
+        buttonpanel.setLayout(new BorderLayout());
+        JPanel controls = new JPanel();
+        controls.add(statusLabel);
+        controls.add(engineBox);
+        controls.add(cancelButton);
+        buttonpanel.add(controls, BorderLayout.NORTH);
+        buttonpanel.add(progressLabel, BorderLayout.SOUTH);
+        add(buttonpanel, BorderLayout.SOUTH);
+        firstTurnFlag = true;
+    }
 
-        for (int r = 0; r < model.numRows(); r++) {
-            for (int c = 0; c < model.numColumns(); c++) {
-                if (model.pieceAt(r, c) == null) {
-                    board[r][c] = new JButton("", null);
-                    board[r][c].addActionListener(listener);
+    // finds out on the engine thread whether the player to move is in check or has lost, then tells the player and
+    // lets the engine reply if it plays that side
+    private void startTurn() {
+        ChessModel position = new ChessModel(model);
+        Player player = position.currentPlayer();
+        statusLabel.setText(name(player) + " to move");
+        SwingWorker<Boolean[], Void> worker = new SwingWorker<>() {
+            @Override
+            protected Boolean[] doInBackground() {
+                boolean check = position.inCheck(player);
+                return new Boolean[] {check, position.isComplete(player)};
+            }
+
+            @Override
+            protected void done() {
+                if (thinking == this)
+                    thinking = null;
+                Boolean[] state;
+                try {
+                    state = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    statusLabel.setText("Error: " + e.getCause());
+                    return;
                 }
-                else if (model.pieceAt(r, c).player() == Player.WHITE) {
-                    placeWhitePieces(r, c);
+                if (state[1]) {
+                    String result = state[0] ? "Checkmate, " + name(player.next()) + " wins" : "Stalemate";
+                    statusLabel.setText(result);
+                    JOptionPane.showMessageDialog(ChessPanel.this, result);
+                    return;
                 }
-                else if (model.pieceAt(r, c).player() == Player.BLACK) {
-                    placeBlackPieces(r,c);
+                if (state[0]) {
+                    statusLabel.setText(name(player) + " is in check");
+                    JOptionPane.showMessageDialog(ChessPanel.this, name(player) + " is in check");
                 }
-
-                setBackGroundColor(r, c);
-                boardpanel.add(board[r][c]);
+                if (engineBox.isSelected() && player == Player.BLACK)
+                    startSearch();
             }
-        }
-        add(boardpanel, BorderLayout.WEST);
-        boardpanel.setPreferredSize(new Dimension(600, 600));
-        add(buttonpanel);
-        firstTurnFlag = true;
+        };
+        run(worker);
     }
 
-    private void setBackGroundColor(int r, int c) {
-        if ((c % 2 == 1 && r % 2 == 0) || (c % 2 == 0 && r % 2 == 1)) {
-            board[r][c].setBackground(Color.LIGHT_GRAY);
-            board[r][c].setOpaque(true);
-            board[r][c].setBorderPainted(false);
-        } else if ((c % 2 == 0 && r % 2 == 0) || (c % 2 == 1 && r % 2 == 1)) {
-            board[r][c].setBackground(Color.WHITE);
-            board[r][c].setOpaque(true);
-            board[r][c].setBorderPainted(false);
-        }
-    }
+    // searches a copy of the position on the engine thread, reporting each finished depth, then plays the move
+    private void startSearch() {
+        ChessModel position = new ChessModel(model);
+        Search engine = new Search(position, table);
+        engine.setDepthLimit(Search.MAX_PLY);
+        engine.setNodeLimit(Long.MAX_VALUE);
+        engine.setTimeLimit(ENGINE_MILLIS);
+        SwingWorker<Integer, String> worker = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() {
+                engine.setListener(done -> publish(progress(done)));
+                engine.search();
+                return engine.bestMove();
+            }
 
-    private void placeWhitePieces(int r, int c) {
-        if (model.pieceAt(r, c).type().equals("Pawn")) {
-            board[r][c] = new JButton(null, wPawn);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Rook")) {
-            board[r][c] = new JButton(null, wRook);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Knight")) {
-            board[r][c] = new JButton(null, wKnight);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Bishop")) {
-            board[r][c] = new JButton(null, wBishop);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Queen")) {
-            board[r][c] = new JButton(null, wQueen);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("King")) {
-            board[r][c] = new JButton(null, wKing);
-            board[r][c].addActionListener(listener);
-        }
-    }
+            @Override
+            protected void process(List<String> chunks) {
+                progressLabel.setText(chunks.get(chunks.size() - 1));
+            }
 
-    private void placeBlackPieces(int r, int c){
-        if (model.pieceAt(r, c).type().equals("Pawn")) {
-            board[r][c] = new JButton(null, bPawn);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Rook")) {
-            board[r][c] = new JButton(null, bRook);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Knight")) {
-            board[r][c] = new JButton(null, bKnight);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Bishop")) {
-            board[r][c] = new JButton(null, bBishop);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("Queen")) {
-            board[r][c] = new JButton(null, bQueen);
-            board[r][c].addActionListener(listener);
-        }
-        if (model.pieceAt(r, c).type().equals("King")) {
-            board[r][c] = new JButton(null, bKing);
-            board[r][c].addActionListener(listener);
-        }
+            @Override
+            protected void done() {
+                //a cancelled search has already handed over
+                if (isCancelled())
+                    return;
+                thinking = null;
+                search = null;
+                cancelButton.setEnabled(false);
+                int best;
+                try {
+                    best = get();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    statusLabel.setText("Error: " + e.getCause());
+                    return;
+                }
+                if (best != 0) {
+                    model.makeMove(best);
+                    displayBoard(PackedMove.toMove(best));
+                }
+                startTurn();
+            }
+        };
+        search = engine;
+        statusLabel.setText("Thinking...");
+        cancelButton.setEnabled(true);
+        run(worker);
     }
 
-    private void createIcons() {
-        // Sets the Image for white player pieces
-        wRook = new ImageIcon("./src/chess/wRook.png");
-        wBishop = new ImageIcon("./src/chess/wBishop.png");
-        wQueen = new ImageIcon("./src/chess/wQueen.png");
-        wKing = new ImageIcon("./src/chess/wKing.png");
-        wPawn = new ImageIcon("./src/chess/wPawn.png");
-        wKnight = new ImageIcon("./src/chess/wKnight.png");
-        //Sets the Image for black player pieces
-        bRook = new ImageIcon("./src/chess/bRook.png");
-        bBishop = new ImageIcon("./src/chess/bBishop.png");
-        bQueen = new ImageIcon("./src/chess/bQueen.png");
-        bKing = new ImageIcon("./src/chess/bKing.png");
-        bPawn = new ImageIcon("./src/chess/bPawn.png");
-        bKnight = new ImageIcon("./src/chess/bKnight.png");
+    private void run(SwingWorker<?, ?> worker) {
+        thinking = worker;
+        engineExecutor.execute(worker);
     }
 
-    // method that updates the board
-    private void displayBoard() {
-
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (model.pieceAt(r, c) == null)
-                    board[r][c].setIcon(null);
-                else if (model.pieceAt(r, c).player() == Player.WHITE) {
-                    if (model.pieceAt(r, c).type().equals("Pawn"))
-                        board[r][c].setIcon(wPawn);
-
-                    if (model.pieceAt(r, c).type().equals("Rook"))
-                        board[r][c].setIcon(wRook);
-
-                    if (model.pieceAt(r, c).type().equals("Knight"))
-                        board[r][c].setIcon(wKnight);
+    // aborts the search without moving and hands the engine's side back to the player; the stop holds even if the
+    // search hasn't started yet, so the engine thread is free for the next turn right away
+    private void cancel() {
+        if (search == null)
+            return;
+        search.stop();
+        thinking.cancel(false);
+        thinking = null;
+        search = null;
+        cancelButton.setEnabled(false);
+        engineBox.setSelected(false);
+        statusLabel.setText(name(model.currentPlayer()) + " to move");
+    }
 
-                    if (model.pieceAt(r, c).type().equals("Bishop"))
-                        board[r][c].setIcon(wBishop);
+    private static String progress(Search search) {
+        StringBuilder text = new StringBuilder("depth ").append(search.completedDepth())
+                .append("  nodes ").append(search.nodes()).append("  score ").append(search.score()).append("  ");
+        for (int move : search.packedPrincipalVariation())
+            text.append(' ').append(PackedMove.toString(move));
+        return text.toString();
+    }
 
-                    if (model.pieceAt(r, c).type().equals("Queen"))
-                        board[r][c].setIcon(wQueen);
+    private static String name(Player player) {
+        return player == Player.WHITE ? "White" : "Black";
+    }
 
-                    if (model.pieceAt(r, c).type().equals("King"))
-                        board[r][c].setIcon(wKing);
+    // method that updates the board after a move; the board repaints only the squares that changed and slides the
+    // moved piece into place
+    private void displayBoard(Move move) {
+        board.update(model, move);
+    }
 
+    // inner class that receives the clicks on the board, already mapped to a square
+    private class listener implements BoardComponent.SquareListener {
+        public void squareClicked(int r, int c) {
+            if (firstTurnFlag) {
+                fromRow = r;
+                fromCol = c;
+                firstTurnFlag = false;
+                board.setSelected(r, c);
+                //remember the legal moves of the selected piece for the second click
+                selectedMoves.clear();
+                if (model.pieceAt(r, c) != null && model.pieceAt(r, c).player() == model.currentPlayer()) {
+                    for (Move legal : model.legalMoves(model.currentPlayer())) {
+                        if (legal.fromRow == r && legal.fromColumn == c)
+                            selectedMoves.add(legal);
+                    }
+                }
+            } else {
+                toRow = r;
+                toCol = c;
+                firstTurnFlag = true;
+                board.setSelected(-1, -1);
+                Move m = null;
+                for (Move legal : selectedMoves) {
+                    if (legal.toRow == toRow && legal.toColumn == toCol)
+                        m = legal;
                 }
-                else if (model.pieceAt(r, c).player() == Player.BLACK) {
-                    if (model.pieceAt(r, c).type().equals("Pawn"))
-                        board[r][c].setIcon(bPawn);
-
-                    if (model.pieceAt(r, c).type().equals("Rook"))
-                        board[r][c].setIcon(bRook);
-
-                    if (model.pieceAt(r, c).type().equals("Knight"))
-                        board[r][c].setIcon(bKnight);
-
-                    if (model.pieceAt(r, c).type().equals("Bishop"))
-                        board[r][c].setIcon(bBishop);
-
-                    if (model.pieceAt(r, c).type().equals("Queen"))
-                        board[r][c].setIcon(bQueen);
-
-                    if (model.pieceAt(r, c).type().equals("King"))
-                        board[r][c].setIcon(bKing);
 
+                // a worker with no search is looking for check, which only takes a moment
+                if (m != null && search != null) {
+                    JOptionPane.showMessageDialog(ChessPanel.this, "The engine is thinking");
+                }
+                else if (m != null && thinking != null) {
+                    JOptionPane.showMessageDialog(ChessPanel.this, "Still looking for check, try again");
+                }
+                else if (m != null) {
+                    model.makeMove(m);
+                    displayBoard(m);
+                    startTurn();
+                }
+                else{
+                    if(model.pieceAt(fromRow,fromCol) != null && model.pieceAt(fromRow,fromCol).player() != model.currentPlayer()){
+                        JOptionPane.showMessageDialog(ChessPanel.this, "It is your opponents turn");
+                    }
+                    else {
+                        JOptionPane.showMessageDialog(ChessPanel.this, "Invalid move");
+                    }
                 }
             }
-
-        }
-        repaint();
-    }
-
-    // inner class that represents action listener for buttons
-    private class listener implements ActionListener {
-        public void actionPerformed(ActionEvent event) {
-            for (int r = 0; r < model.numRows(); r++)
-                for (int c = 0; c < model.numColumns(); c++)
-                    if (board[r][c] == event.getSource())
-                        if (firstTurnFlag) {
-                            fromRow = r;
-                            fromCol = c;
-                            firstTurnFlag = false;
-                        } else {
-                            toRow = r;
-                            toCol = c;
-                            firstTurnFlag = true;
-                            Move m = new Move(fromRow, fromCol, toRow, toCol);
-
-
-
-                            if ((model.isValidMove(m))) {
-                                model.move(m);
-                                displayBoard();
-                            }
-//                            if ((model.isValidMove(m)) && model.currentPlayer() == model.pieceAt(fromRow,fromCol).player()) {
-//                                model.move(m);
-//                                displayBoard();
-//                                model.setNextPlayer();
-//                            }
-
-                            else{
-                                if(model.pieceAt(fromRow,fromCol) != null && model.pieceAt(fromRow,fromCol).player() != model.currentPlayer()){
-                                    JOptionPane.showMessageDialog(null, "It is your opponents turn");
-                                }
-                                else {
-                                    JOptionPane.showMessageDialog(null, "Invalid move");
-                                }
-                            }
-                            if(model.inCheck(Player.WHITE)){
-                                JOptionPane.showMessageDialog(null, "White is in check");
-                                if(model.isComplete(Player.WHITE)){
-                                    JOptionPane.showMessageDialog(null, "Checkmate, Black wins");
-                                }
-                            }
-                            if(model.inCheck(Player.BLACK)){
-                                JOptionPane.showMessageDialog(null, "Black is in check");
-                                if(model.isComplete(Player.BLACK)){
-                                    JOptionPane.showMessageDialog(null, "Checkmate, White wins");
-                                }
-                            }
-                        }
         }
     }
-}
\ No newline at end of file
+}
@@ -8,7 +8,39 @@ public abstract class ChessPiece implements IChessPiece {
 		this.owner = player;
 	}
 
-	public abstract String type();
+	public abstract PieceKind kind();
+
+	public String type() {
+		return kind().type();
+	}
+
+	/**
+	 * Return the shared piece object of the given kind and player.  Pieces don't store their location, so one object
+	 * per kind and player is enough for a whole board, or for any number of boards.
+	 *
+	 * @param kind   the kind of piece
+	 * @param player the player that owns the piece
+	 * @return the shared instance
+	 */
+	public static ChessPiece of(PieceKind kind, Player player) {
+		return Shared.PIECES[kind.code(player)];
+	}
+
+	//created on first use, so building them doesn't run while ChessPiece itself is being initialized
+	private static final class Shared {
+		static final ChessPiece[] PIECES = new ChessPiece[12];
+
+		static {
+			for (Player p : Player.values()) {
+				PIECES[PieceKind.PAWN.code(p)] = new Pawn(p);
+				PIECES[PieceKind.KNIGHT.code(p)] = new Knight(p);
+				PIECES[PieceKind.BISHOP.code(p)] = new Bishop(p);
+				PIECES[PieceKind.ROOK.code(p)] = new Rook(p);
+				PIECES[PieceKind.QUEEN.code(p)] = new Queen(p);
+				PIECES[PieceKind.KING.code(p)] = new King(p);
+			}
+		}
+	}
 
 	public Player player() {
 		return owner;
@@ -40,4 +72,30 @@ public abstract class ChessPiece implements IChessPiece {
 
 		return valid;
 	}
+
+	//checks if the move stays on one row or one column
+	protected static boolean isStraight(Move move) {
+		return move.fromRow == move.toRow || move.fromColumn == move.toColumn;
+	}
+
+	//checks if the move changes the row and the column by the same amount
+	protected static boolean isDiagonal(Move move) {
+		return Math.abs(move.toRow - move.fromRow) == Math.abs(move.toColumn - move.fromColumn);
+	}
+
+	//walks the squares strictly between the from and to squares of a straight or diagonal move,
+	//returns false if any of them is occupied
+	protected static boolean pathClear(Move move, IChessPiece[][] board) {
+		int rowStep = Integer.signum(move.toRow - move.fromRow);
+		int columnStep = Integer.signum(move.toColumn - move.fromColumn);
+		int r = move.fromRow + rowStep;
+		int c = move.fromColumn + columnStep;
+		while (r != move.toRow || c != move.toColumn) {
+			if (board[r][c] != null)
+				return false;
+			r += rowStep;
+			c += columnStep;
+		}
+		return true;
+	}
 }
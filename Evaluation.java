@@ -0,0 +1,181 @@
+package chess;
+
+/**
+ * Static evaluation by material and piece-square tables, kept up to date one piece at a time.
+ *
+ * Every piece adds a middlegame and an endgame value for its kind and square, positive for white and negative for
+ * black, and a phase weight for its kind (knights and bishops 1, rooks 2, queens 4, 24 for the starting position).
+ * The model calls {@link #add} and {@link #remove} as pieces come and go, so {@link #score(Player)} only blends the
+ * two running totals by the phase: all middlegame with everything on the board, all endgame once the minor and major
+ * pieces are gone.  {@link #compute(ChessModel, Player)} scores a position from scratch, to check the running totals.
+ */
+public final class Evaluation {
+
+	//indexed by PieceKind.ordinal()
+	private static final int[] MG_VALUE = {82, 337, 365, 477, 1025, 0};
+	private static final int[] EG_VALUE = {94, 281, 297, 512, 936, 0};
+	private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+	public static final int MAX_PHASE = 24;
+
+	//bonuses by square from white's side of the board, row 0 first like the board array
+	private static final int[] PAWN_MG = {
+			0, 0, 0, 0, 0, 0, 0, 0,
+			50, 50, 50, 50, 50, 50, 50, 50,
+			10, 10, 20, 30, 30, 20, 10, 10,
+			5, 5, 10, 25, 25, 10, 5, 5,
+			0, 0, 0, 20, 20, 0, 0, 0,
+			5, -5, -10, 0, 0, -10, -5, 5,
+			5, 10, 10, -20, -20, 10, 10, 5,
+			0, 0, 0, 0, 0, 0, 0, 0};
+	private static final int[] PAWN_EG = {
+			0, 0, 0, 0, 0, 0, 0, 0,
+			80, 80, 80, 80, 80, 80, 80, 80,
+			50, 50, 50, 50, 50, 50, 50, 50,
+			30, 30, 30, 30, 30, 30, 30, 30,
+			20, 20, 20, 20, 20, 20, 20, 20,
+			10, 10, 10, 10, 10, 10, 10, 10,
+			10, 10, 10, 10, 10, 10, 10, 10,
+			0, 0, 0, 0, 0, 0, 0, 0};
+	private static final int[] KNIGHT = {
+			-50, -40, -30, -30, -30, -30, -40, -50,
+			-40, -20, 0, 0, 0, 0, -20, -40,
+			-30, 0, 10, 15, 15, 10, 0, -30,
+			-30, 5, 15, 20, 20, 15, 5, -30,
+			-30, 0, 15, 20, 20, 15, 0, -30,
+			-30, 5, 10, 15, 15, 10, 5, -30,
+			-40, -20, 0, 5, 5, 0, -20, -40,
+			-50, -40, -30, -30, -30, -30, -40, -50};
+	private static final int[] BISHOP = {
+			-20, -10, -10, -10, -10, -10, -10, -20,
+			-10, 0, 0, 0, 0, 0, 0, -10,
+			-10, 0, 5, 10, 10, 5, 0, -10,
+			-10, 5, 5, 10, 10, 5, 5, -10,
+			-10, 0, 10, 10, 10, 10, 0, -10,
+			-10, 10, 10, 10, 10, 10, 10, -10,
+			-10, 5, 0, 0, 0, 0, 5, -10,
+			-20, -10, -10, -10, -10, -10, -10, -20};
+	private static final int[] ROOK = {
+			0, 0, 0, 0, 0, 0, 0, 0,
+			5, 10, 10, 10, 10, 10, 10, 5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			-5, 0, 0, 0, 0, 0, 0, -5,
+			0, 0, 0, 5, 5, 0, 0, 0};
+	private static final int[] QUEEN = {
+			-20, -10, -10, -5, -5, -10, -10, -20,
+			-10, 0, 0, 0, 0, 0, 0, -10,
+			-10, 0, 5, 5, 5, 5, 0, -10,
+			-5, 0, 5, 5, 5, 5, 0, -5,
+			0, 0, 5, 5, 5, 5, 0, -5,
+			-10, 5, 5, 5, 5, 5, 0, -10,
+			-10, 0, 5, 0, 0, 0, 0, -10,
+			-20, -10, -10, -5, -5, -10, -10, -20};
+	//the king hides behind its pawns while there is material to attack it, and comes to the center in the endgame
+	private static final int[] KING_MG = {
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-20, -30, -30, -40, -40, -30, -30, -20,
+			-10, -20, -20, -20, -20, -20, -20, -10,
+			20, 20, 0, 0, 0, 0, 20, 20,
+			20, 30, 10, 0, 0, 10, 30, 20};
+	private static final int[] KING_EG = {
+			-50, -40, -30, -20, -20, -30, -40, -50,
+			-30, -20, -10, 0, 0, -10, -20, -30,
+			-30, -10, 20, 30, 30, 20, -10, -30,
+			-30, -10, 30, 40, 40, 30, -10, -30,
+			-30, -10, 30, 40, 40, 30, -10, -30,
+			-30, -10, 20, 30, 30, 20, -10, -30,
+			-30, -30, 0, 0, 0, 0, -30, -30,
+			-50, -30, -30, -30, -30, -30, -30, -50};
+
+	//material plus square bonus, signed by color, indexed [PieceKind.code(player)][square]
+	private static final int[][] MG = new int[12][64];
+	private static final int[][] EG = new int[12][64];
+
+	static {
+		int[][] mg = {PAWN_MG, KNIGHT, BISHOP, ROOK, QUEEN, KING_MG};
+		int[][] eg = {PAWN_EG, KNIGHT, BISHOP, ROOK, QUEEN, KING_EG};
+		for (PieceKind kind : PieceKind.values()) {
+			int k = kind.ordinal();
+			for (int square = 0; square < 64; square++) {
+				//black reads the tables upside down
+				MG[kind.code(Player.WHITE)][square] = MG_VALUE[k] + mg[k][square];
+				EG[kind.code(Player.WHITE)][square] = EG_VALUE[k] + eg[k][square];
+				MG[kind.code(Player.BLACK)][square] = -(MG_VALUE[k] + mg[k][square ^ 56]);
+				EG[kind.code(Player.BLACK)][square] = -(EG_VALUE[k] + eg[k][square ^ 56]);
+			}
+		}
+	}
+
+	private int mg;
+	private int eg;
+	private int phase;
+
+	public void add(IChessPiece piece, int square) {
+		int code = piece.kind().code(piece.player());
+		mg += MG[code][square];
+		eg += EG[code][square];
+		phase += PHASE[piece.kind().ordinal()];
+	}
+
+	public void remove(IChessPiece piece, int square) {
+		int code = piece.kind().code(piece.player());
+		mg -= MG[code][square];
+		eg -= EG[code][square];
+		phase -= PHASE[piece.kind().ordinal()];
+	}
+
+	public void copyFrom(Evaluation other) {
+		mg = other.mg;
+		eg = other.eg;
+		phase = other.phase;
+	}
+
+	public void clear() {
+		mg = eg = phase = 0;
+	}
+
+	/**
+	 * Return the score of the pieces added so far, blended between the middlegame and endgame totals by the phase.
+	 *
+	 * @param p the player whose point of view the score is from
+	 * @return the score in centipawns, positive if {@code p} is better
+	 */
+	public int score(Player p) {
+		int weight = Math.min(phase, MAX_PHASE);
+		int score = (mg * weight + eg * (MAX_PHASE - weight)) / MAX_PHASE;
+		return p == Player.WHITE ? score : -score;
+	}
+
+	/**
+	 * Return the game phase, from {@link #MAX_PHASE} with all the pieces on the board down to 0 with only kings and
+	 * pawns left.
+	 *
+	 * @return the phase of the pieces added so far
+	 */
+	public int phase() {
+		return Math.min(phase, MAX_PHASE);
+	}
+
+	/**
+	 * Evaluate a position from scratch, scanning all 64 squares.  Meant as a check of the incrementally updated
+	 * score, not for use in the search.
+	 *
+	 * @param model the position
+	 * @param p     the player whose point of view the score is from
+	 * @return the same score {@link #score(Player)} gives after adding every piece of {@code model}
+	 */
+	public static int compute(ChessModel model, Player p) {
+		Evaluation evaluation = new Evaluation();
+		for (int square = 0; square < 64; square++) {
+			IChessPiece piece = model.pieceAt(square >> 3, square & 7);
+			if (piece != null)
+				evaluation.add(piece, square);
+		}
+		return evaluation.score(p);
+	}
+}
@@ -0,0 +1,398 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A headless server for many games at once, each with its own {@link ChessModel}.
+ *
+ * Every game is an actor: requests for it queue up in its mailbox and are run one at a time, in order, on a shared
+ * pool with one thread per core, so a game's model is never touched by two threads at once and an idle game costs
+ * only its memory.  Requests return a {@link CompletableFuture} that completes once the game has handled them.
+ * The same requests can be sent as text lines over a local socket, see {@link #listen(int)}.
+ *
+ * Each game times the validation of every submitted move and the check and game-over detection after it, and
+ * keeps the latencies in a {@link LatencyHistogram} per game.
+ *
+ * Usage: {@code java chess.GameServer [port]} to serve on the local socket, or
+ * {@code java chess.GameServer bench [games] [moves]} to play random games and print the latencies.
+ */
+public class GameServer implements AutoCloseable {
+
+	/**
+	 * What happened to a submitted move.
+	 */
+	public enum MoveStatus {
+		//the move is not legal for the player to move, or the game is over
+		ILLEGAL,
+		MOVED,
+		//moved, and the player to move now is in check
+		CHECK,
+		CHECKMATE,
+		STALEMATE
+	}
+
+	//how many requests a game handles before giving other games a turn
+	private static final int BATCH = 32;
+
+	private final ExecutorService executor;
+	private final ConcurrentHashMap<Long, Game> games = new ConcurrentHashMap<>();
+	private final AtomicLong nextId = new AtomicLong(1);
+	private ServerSocket socket;
+
+	public GameServer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public GameServer(int threads) {
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "game-actor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private final class Game implements Runnable {
+		final ChessModel model = new ChessModel();
+		final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+		final AtomicBoolean scheduled = new AtomicBoolean();
+		final LatencyHistogram validation = new LatencyHistogram();
+		final LatencyHistogram check = new LatencyHistogram();
+
+		<T> CompletableFuture<T> ask(Function<Game, T> request) {
+			CompletableFuture<T> reply = new CompletableFuture<>();
+			mailbox.add(() -> {
+				try {
+					reply.complete(request.apply(this));
+				} catch (RuntimeException e) {
+					reply.completeExceptionally(e);
+				}
+			});
+			schedule();
+			return reply;
+		}
+
+		void schedule() {
+			if (scheduled.compareAndSet(false, true))
+				executor.execute(this);
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < BATCH; i++) {
+				Runnable request = mailbox.poll();
+				if (request == null)
+					break;
+				request.run();
+			}
+			//the flag hands the model over to whichever thread runs the game next
+			scheduled.set(false);
+			if (!mailbox.isEmpty())
+				schedule();
+		}
+
+		MoveStatus play(int move) {
+			long start = System.nanoTime();
+			boolean legal = isLegal(move);
+			validation.record(System.nanoTime() - start);
+			if (!legal)
+				return MoveStatus.ILLEGAL;
+			model.makeMove(move);
+
+			start = System.nanoTime();
+			Player next = model.currentPlayer();
+			boolean inCheck = model.inCheck(next);
+			boolean over = model.isComplete(next);
+			check.record(System.nanoTime() - start);
+			if (over)
+				return inCheck ? MoveStatus.CHECKMATE : MoveStatus.STALEMATE;
+			return inCheck ? MoveStatus.CHECK : MoveStatus.MOVED;
+		}
+
+		//the piece's own rules, then the promotion, then whether the king is left in check
+		boolean isLegal(int move) {
+			int from = PackedMove.from(move);
+			int to = PackedMove.to(move);
+			IChessPiece piece = model.pieceAt(from >> 3, from & 7);
+			if (piece == null || piece.player() != model.currentPlayer())
+				return false;
+			if (!model.isValidMove(PackedMove.toMove(move)))
+				return false;
+			boolean promotes = piece.kind() == PieceKind.PAWN && (to < 8 || to >= 56);
+			return promotes == (PackedMove.promotion(move) != null) && model.isLegal(move);
+		}
+	}
+
+	/**
+	 * Start a game from the usual starting position.
+	 *
+	 * @return the id of the new game
+	 */
+	public long newGame() {
+		long id = nextId.getAndIncrement();
+		games.put(id, new Game());
+		return id;
+	}
+
+	/**
+	 * Start a game from a position.
+	 *
+	 * @param fen the position as a FEN record
+	 * @return the id of the new game
+	 * @throws IllegalArgumentException if {@code fen} is not a valid FEN record
+	 */
+	public long newGame(CharSequence fen) {
+		Game game = new Game();
+		game.model.setFen(fen);
+		long id = nextId.getAndIncrement();
+		games.put(id, game);
+		return id;
+	}
+
+	/**
+	 * Submit a move for the player to move in a game.  A pawn reaching the last row becomes a queen.
+	 *
+	 * @param id   the game
+	 * @param move the move
+	 * @return the outcome, once the game has handled the move
+	 */
+	public CompletableFuture<MoveStatus> submitMove(long id, Move move) {
+		Move copy = new Move(move.fromRow, move.fromColumn, move.toRow, move.toColumn);
+		return game(id).ask(game -> {
+			if (!onBoard(copy.fromRow, copy.fromColumn) || !onBoard(copy.toRow, copy.toColumn))
+				return MoveStatus.ILLEGAL;
+			return game.play(game.model.encode(copy));
+		});
+	}
+
+	/**
+	 * Submit a move in coordinate notation, such as {@code e2e4} or {@code e7e8n}, for the player to move in a game.
+	 *
+	 * @param id   the game
+	 * @param move the move
+	 * @return the outcome, once the game has handled the move
+	 * @throws IllegalArgumentException if {@code move} is not in coordinate notation
+	 */
+	public CompletableFuture<MoveStatus> submitMove(long id, CharSequence move) {
+		int packed = PackedMove.parse(move);
+		return game(id).ask(game -> game.play(packed));
+	}
+
+	public CompletableFuture<List<Move>> legalMoves(long id) {
+		return game(id).ask(game -> game.model.legalMoves(game.model.currentPlayer()));
+	}
+
+	public CompletableFuture<String> fen(long id) {
+		return game(id).ask(game -> game.model.toFen());
+	}
+
+	/**
+	 * Return a copy of a game's move validation latencies.
+	 *
+	 * @param id the game
+	 * @return the histogram of the time taken to validate each submitted move
+	 */
+	public CompletableFuture<LatencyHistogram> validationLatency(long id) {
+		return game(id).ask(game -> game.validation.copy());
+	}
+
+	/**
+	 * Return a copy of a game's check detection latencies.
+	 *
+	 * @param id the game
+	 * @return the histogram of the time taken to detect check, checkmate and stalemate after each move
+	 */
+	public CompletableFuture<LatencyHistogram> checkLatency(long id) {
+		return game(id).ask(game -> game.check.copy());
+	}
+
+	/**
+	 * Return the validation and check detection latencies of all games together.
+	 *
+	 * @return the two histograms, validation first
+	 */
+	public CompletableFuture<LatencyHistogram[]> totalLatency() {
+		LatencyHistogram[] total = {new LatencyHistogram(), new LatencyHistogram()};
+		List<CompletableFuture<Void>> parts = new ArrayList<>();
+		for (Game game : games.values()) {
+			parts.add(game.ask(g -> {
+				LatencyHistogram[] copies = {g.validation.copy(), g.check.copy()};
+				return copies;
+			}).thenAccept(copies -> {
+				synchronized (total) {
+					total[0].add(copies[0]);
+					total[1].add(copies[1]);
+				}
+			}));
+		}
+		return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(done -> total);
+	}
+
+	/**
+	 * End a game.  Requests already in its mailbox are still handled.
+	 *
+	 * @param id the game
+	 */
+	public void endGame(long id) {
+		games.remove(id);
+	}
+
+	public int gameCount() {
+		return games.size();
+	}
+
+	private Game game(long id) {
+		Game game = games.get(id);
+		if (game == null)
+			throw new IllegalArgumentException("No game " + id);
+		return game;
+	}
+
+	private static boolean onBoard(int row, int column) {
+		return row >= 0 && row < 8 && column >= 0 && column < 8;
+	}
+
+	/**
+	 * Accept connections on a loopback socket.  Each line a client sends is one request, answered by one line
+	 * starting with {@code ok} or {@code error}:
+	 * <ul>
+	 * <li>{@code new [fen]} answers the id of a new game</li>
+	 * <li>{@code move id e2e4} answers the {@link MoveStatus}</li>
+	 * <li>{@code fen id} answers the position</li>
+	 * <li>{@code stats id} answers the game's validation and check detection latencies</li>
+	 * <li>{@code end id} ends the game</li>
+	 * </ul>
+	 *
+	 * @param port the port, or 0 for any free port
+	 * @return the port the server listens on
+	 * @throws IOException if the socket can't be opened
+	 */
+	public int listen(int port) throws IOException {
+		socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(() -> {
+			while (!socket.isClosed()) {
+				try {
+					Socket client = socket.accept();
+					Thread connection = new Thread(() -> serve(client), "game-connection");
+					connection.setDaemon(true);
+					connection.start();
+				} catch (IOException e) {
+					//closed
+				}
+			}
+		}, "game-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return socket.getLocalPort();
+	}
+
+	private void serve(Socket client) {
+		try (client;
+				BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(client.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				try {
+					out.println("ok " + handle(line.trim()));
+				} catch (RuntimeException e) {
+					Throwable cause = e.getCause() != null ? e.getCause() : e;
+					out.println("error " + cause.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			//client went away
+		}
+	}
+
+	private String handle(String line) {
+		String[] words = line.split("\\s+", 3);
+		switch (words[0]) {
+			case "new":
+				return Long.toString(words.length > 1 ? newGame(line.substring(3).trim()) : newGame());
+			case "move":
+				if (words.length < 3)
+					throw new IllegalArgumentException("usage: move id e2e4");
+				return submitMove(Long.parseLong(words[1]), words[2]).join().toString();
+			case "fen":
+				return fen(id(words)).join();
+			case "stats":
+				long id = id(words);
+				return "validation " + validationLatency(id).join() + " check " + checkLatency(id).join();
+			case "end":
+				endGame(id(words));
+				return "";
+			default:
+				throw new IllegalArgumentException("Unknown request " + words[0]);
+		}
+	}
+
+	private static long id(String[] words) {
+		if (words.length < 2)
+			throw new IllegalArgumentException("usage: " + words[0] + " id");
+		return Long.parseLong(words[1]);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (socket != null)
+			socket.close();
+		executor.shutdown();
+	}
+
+	//plays random legal moves in many games at once, every game's moves chained through its futures
+	private static void bench(int gameCount, int moves) {
+		try (GameServer server = new GameServer()) {
+			long start = System.nanoTime();
+			List<CompletableFuture<?>> running = new ArrayList<>(gameCount);
+			for (int i = 0; i < gameCount; i++) {
+				long id = server.newGame();
+				Random random = new Random(i);
+				CompletableFuture<?> game = CompletableFuture.completedFuture(MoveStatus.MOVED);
+				for (int m = 0; m < moves; m++) {
+					game = game.thenCompose(status -> server.legalMoves(id)).thenCompose(legal -> legal.isEmpty()
+							? CompletableFuture.completedFuture(MoveStatus.ILLEGAL)
+							: server.submitMove(id, legal.get(random.nextInt(legal.size()))));
+				}
+				running.add(game);
+			}
+			CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+			long nanos = System.nanoTime() - start;
+			LatencyHistogram[] total = server.totalLatency().join();
+			System.out.printf("%d games, %d moves in %.2f s (%.0f moves/s)%n", gameCount, total[0].count(), nanos / 1e9,
+					total[0].count() * 1e9 / nanos);
+			System.out.println("validation " + total[0]);
+			System.out.println("check      " + total[1]);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].equals("bench")) {
+			bench(args.length > 1 ? Integer.parseInt(args[1]) : 10000, args.length > 2 ? Integer.parseInt(args[2]) : 40);
+			return;
+		}
+		GameServer server = new GameServer();
+		int port = server.listen(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+		System.out.println("listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port);
+		Thread.currentThread().join();
+	}
+}
@@ -16,6 +16,14 @@ public interface IChessPiece {
 	 */
 	String type();
 
+	/**
+	 * Return the kind of this piece.  Code that needs to tell pieces apart should switch on this rather than compare
+	 * {@link #type()} strings.
+	 *
+	 * @return the kind of this piece
+	 */
+	PieceKind kind();
+
 	/**
 	 * Returns whether the piece at location {@code [move.fromRow, move.fromColumn]} is allowed to move to location
 	 * {@code [move.fromRow, move.fromColumn]}.
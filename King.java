@@ -6,8 +6,8 @@ public class King extends ChessPiece {
 		super(player);
 	}
 
-	public String type() {
-		return "King";
+	public PieceKind kind() {
+		return PieceKind.KING;
 	}
 
 	public boolean isValidMove(Move move, IChessPiece[][] board) {
@@ -15,13 +15,8 @@ public class King extends ChessPiece {
 		if(!super.isValidMove(move, board)) {
 			return false;
 		}
-		boolean valid = true;
-
-		//Checks if the king moved one space in any direction
-		if(Math.abs(move.fromRow-move.toRow) > 1 || Math.abs(move.fromColumn-move.toColumn) > 1){
-			return false;
-		}
-		return valid;
+		//Checks the destination against the king's precomputed steps from its square
+		return Attacks.contains(Attacks.king(move.fromRow * 8 + move.fromColumn), move.toRow * 8 + move.toColumn);
 
 	}
 }
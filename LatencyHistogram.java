@@ -0,0 +1,92 @@
+package chess;
+
+/**
+ * A histogram of latencies in nanoseconds with logarithmic buckets: exact below 16 ns, then eight buckets per power
+ * of two, so any percentile is reported within 12.5% of the true value.  It is about 1 KiB whatever the number of
+ * samples, small enough to keep one per game.  Not thread-safe; each histogram belongs to one game's actor.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BITS = 3;
+	private static final int LINEAR = 16;
+	//values up to 2^31 ns (about 2 seconds) get their own bucket, longer ones share the last
+	private static final int BUCKETS = LINEAR + (31 - 4) * (1 << SUB_BITS);
+
+	private final int[] counts = new int[BUCKETS];
+	private long count;
+	private long max;
+
+	public void record(long nanos) {
+		counts[bucket(Math.max(0, nanos))]++;
+		count++;
+		max = Math.max(max, nanos);
+	}
+
+	/**
+	 * Add the samples of {@code other} to this histogram.
+	 *
+	 * @param other the histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		max = Math.max(max, other.max);
+	}
+
+	public LatencyHistogram copy() {
+		LatencyHistogram copy = new LatencyHistogram();
+		copy.add(this);
+		return copy;
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public long max() {
+		return max;
+	}
+
+	/**
+	 * Return the latency that {@code percentile} percent of the samples don't exceed, rounded up to the top of its
+	 * bucket.
+	 *
+	 * @param percentile from 0 to 100
+	 * @return the latency in nanoseconds, 0 if there are no samples
+	 */
+	public long percentile(double percentile) {
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(upperBound(i), max);
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns", count, percentile(50), percentile(90),
+				percentile(99), percentile(99.9), max);
+	}
+
+	private static int bucket(long nanos) {
+		if (nanos < LINEAR)
+			return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int bucket = LINEAR + (exponent - 4) * (1 << SUB_BITS) + (int) ((nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1));
+		return Math.min(bucket, BUCKETS - 1);
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < LINEAR)
+			return bucket;
+		int exponent = 4 + (bucket - LINEAR) / (1 << SUB_BITS);
+		int sub = (bucket - LINEAR) % (1 << SUB_BITS);
+		return ((long) ((1 << SUB_BITS) + sub + 1) << (exponent - SUB_BITS)) - 1;
+	}
+}
@@ -13,6 +13,15 @@ public class Move {
 		this.toColumn = toColumn;
 	}
 
+	/**
+	 * Return the move in coordinate notation, such as {@code e2e4}, where row 7 is rank 1 and column 0 is file a.
+	 *
+	 * @return the from and to squares in algebraic form
+	 */
+	public String toCoordinates() {
+		return "" + (char) ('a' + fromColumn) + (8 - fromRow) + (char) ('a' + toColumn) + (8 - toRow);
+	}
+
 	@Override
 	public String toString() {
 		return "Move [fromRow=" + fromRow + ", fromColumn=" + fromColumn + ", toRow=" + toRow + ", toColumn=" + toColumn
@@ -0,0 +1,123 @@
+package chess;
+
+/**
+ * Moves packed into an {@code int}, used by the move generator and the search so that move lists can be plain
+ * {@code int[]} buffers instead of lists of {@link Move} objects.
+ *
+ * Bits 0-5 hold the from square and bits 6-11 the to square (both {@code row * 8 + column}), bits 12-14 the
+ * {@link PieceKind#ordinal()} of the piece a pawn is promoted to, or 0, and bits 16 and up hold flags.  The low 16
+ * bits alone identify the move, and are never 0 for a real move because its from and to squares differ.
+ */
+public final class PackedMove {
+
+	public static final int CAPTURE = 1 << 16;
+	public static final int DOUBLE_PUSH = 1 << 17;
+
+	private static final PieceKind[] PROMOTIONS = {null, PieceKind.KNIGHT, PieceKind.BISHOP, PieceKind.ROOK,
+			PieceKind.QUEEN, null, null, null};
+
+	private PackedMove() {
+	}
+
+	public static int of(int from, int to, int flags) {
+		return from | to << 6 | flags;
+	}
+
+	public static int of(int from, int to, PieceKind promotion, int flags) {
+		return from | to << 6 | promotion.ordinal() << 12 | flags;
+	}
+
+	/**
+	 * Pack a {@link Move}.  The result carries no flags and no promotion.
+	 *
+	 * @param move the move to pack
+	 * @return the packed move
+	 */
+	public static int of(Move move) {
+		return (move.fromRow * 8 + move.fromColumn) | (move.toRow * 8 + move.toColumn) << 6;
+	}
+
+	/**
+	 * Read a move in coordinate notation, such as {@code e2e4} or {@code e7e8q}, as written by {@link #toString(int)}.
+	 *
+	 * @param text the move
+	 * @return the packed move, without flags
+	 * @throws IllegalArgumentException if {@code text} is not a move in coordinate notation
+	 */
+	public static int parse(CharSequence text) {
+		int length = text.length();
+		if (length != 4 && length != 5)
+			throw new IllegalArgumentException("Not a move: " + text);
+		int from = square(text, 0);
+		int to = square(text, 2);
+		if (from < 0 || to < 0)
+			throw new IllegalArgumentException("Not a move: " + text);
+		if (length == 4)
+			return of(from, to, 0);
+		PieceKind promotion = PieceKind.ofLetter(text.charAt(4));
+		if (promotion == null || promotion == PieceKind.PAWN || promotion == PieceKind.KING)
+			throw new IllegalArgumentException("Not a promotion piece: " + text);
+		return of(from, to, promotion, 0);
+	}
+
+	//the square written at index, or -1
+	private static int square(CharSequence text, int index) {
+		int column = text.charAt(index) - 'a';
+		int row = '8' - text.charAt(index + 1);
+		return column >= 0 && column < 8 && row >= 0 && row < 8 ? row * 8 + column : -1;
+	}
+
+	public static int from(int move) {
+		return move & 63;
+	}
+
+	public static int to(int move) {
+		return (move >>> 6) & 63;
+	}
+
+	/**
+	 * Return the kind of piece a pawn becomes with this move.
+	 *
+	 * @param move the packed move
+	 * @return the promotion piece kind, or {@code null} if the move isn't a promotion
+	 */
+	public static PieceKind promotion(int move) {
+		return PROMOTIONS[(move >>> 12) & 7];
+	}
+
+	public static boolean isCapture(int move) {
+		return (move & CAPTURE) != 0;
+	}
+
+	/**
+	 * Return the part of the move that identifies it, without the flags.
+	 *
+	 * @param move the packed move
+	 * @return the from square, to square and promotion in 16 bits
+	 */
+	public static int key(int move) {
+		return move & 0xFFFF;
+	}
+
+	/**
+	 * Unpack into a {@link Move}.  {@code Move} has no room for the promotion, which is dropped.
+	 *
+	 * @param move the packed move
+	 * @return a new {@code Move} with the same from and to squares
+	 */
+	public static Move toMove(int move) {
+		return new Move(from(move) >> 3, from(move) & 7, to(move) >> 3, to(move) & 7);
+	}
+
+	/**
+	 * Return the move in coordinate notation, such as {@code e2e4} or {@code e7e8q} for a promotion.
+	 *
+	 * @param move the packed move
+	 * @return the move as text
+	 */
+	public static String toString(int move) {
+		String text = toMove(move).toCoordinates();
+		PieceKind promotion = promotion(move);
+		return promotion == null ? text : text + Character.toLowerCase(promotion.letter());
+	}
+}
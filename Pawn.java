@@ -6,54 +6,29 @@ public class Pawn extends ChessPiece {
 		super(player);
 	}
 
-	public String type() {
-		return "Pawn";
+	public PieceKind kind() {
+		return PieceKind.PAWN;
 	}
 	// determines if the move is valid for a pawn piece
 	public boolean isValidMove(Move move, IChessPiece[][] board) {
-		boolean valid = true;
 		//calls the chesspiece isvalidmove method to check for generic validations
 		if(!super.isValidMove(move, board)) {
 			 return false;
 		}
-		//checks if this is the pawns first movement, allowing it to move two spaces(for white)
-		if(move.fromRow == 6 && move.fromColumn == move.toColumn && move.fromRow-2 == move.toRow && this.player() == Player.WHITE && board[move.toRow][move.toColumn] == null && board[move.toRow+1][move.toColumn] == null){
-			return true;
-		}
-		//checks if this is the first time the pawns first movement, allowing it to move two spaces(for black)
-		if(move.fromRow == 1 && move.fromColumn == move.toColumn && move.fromRow+2 == move.toRow && this.player() == Player.BLACK && board[move.toRow][move.toColumn] == null && board[move.toRow-1][move.toColumn] == null){
-			return true;
-		}
-		//checks if
-		if((Math.abs(move.fromRow-1) != move.toRow  || move.fromColumn != move.toColumn) && this.player() == Player.WHITE){
-			valid = false;
-		}
-		if((Math.abs(move.fromRow+1) != move.toRow  || move.fromColumn != move.toColumn) && this.player() == Player.BLACK){
-			valid = false;
-		}
-		if(board[move.toRow][move.fromColumn] != null){
-			valid = false;
+		int forward = this.player() == Player.WHITE ? -1 : 1;
+		//moving diagonally forward is only allowed when taking an opponents piece
+		if (Attacks.contains(Attacks.pawn(this.player(), move.fromRow * 8 + move.fromColumn), move.toRow * 8 + move.toColumn)) {
+			return board[move.toRow][move.toColumn] != null;
 		}
-
-		//If statements checking for the unique condition where a pawn is able to take an opponents piece
-		if(move.fromRow-1 == move.toRow && move.fromColumn+1 == move.toColumn && board[move.toRow][move.fromColumn+1] != null
-				&& this.player() == Player.WHITE && board[move.toRow][move.fromColumn+1].player() == Player.BLACK){
-			valid = true;
-		}
-		if (move.fromRow-1 == move.toRow && move.fromColumn-1 == move.toColumn && board[move.toRow][move.fromColumn-1] != null
-				&& this.player() ==Player.WHITE && board[move.toRow][move.fromColumn-1].player()== Player.BLACK ) {
-			valid = true;
-		}
-
-		if(move.fromRow+1 == move.toRow && move.fromColumn+1 == move.toColumn && board[move.toRow][move.fromColumn+1] != null
-				&& this.player() == Player.BLACK && board[move.toRow][move.fromColumn+1].player() == Player.WHITE){
-			valid = true;
+		//otherwise the pawn moves straight ahead onto an empty space
+		if (move.fromColumn != move.toColumn || board[move.toRow][move.toColumn] != null) {
+			return false;
 		}
-		if(move.fromRow+1 == move.toRow && move.fromColumn-1 == move.toColumn && board[move.toRow][move.fromColumn-1] != null
-				&& this.player() == Player.BLACK && board[move.toRow][move.fromColumn-1].player() == Player.WHITE){
-			valid = true;
+		if (move.toRow == move.fromRow + forward) {
+			return true;
 		}
-
-		return valid;
+		//two spaces on the pawns first movement, if the space it passes is empty too
+		int startRow = this.player() == Player.WHITE ? 6 : 1;
+		return move.fromRow == startRow && move.toRow == move.fromRow + 2 * forward && board[move.fromRow + forward][move.fromColumn] == null;
 	}
 }
\ No newline at end of file
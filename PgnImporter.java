@@ -0,0 +1,263 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the games of a PGN file on the model to check them and count what they hold.  One thread reads the file
+ * with a {@link PgnReader} and hands each game's text to a pool of worker threads through a bounded queue, so
+ * reading never gets far ahead of replaying.  Each worker replays games on its own {@link ChessModel}, resolving
+ * the moves with {@link San}.  A game with a broken or illegal move is counted and skipped; it doesn't stop the
+ * import.
+ *
+ * Usage: {@code java chess.PgnImporter file.pgn [threads]}
+ */
+public class PgnImporter {
+
+	//given to each worker after the last game
+	private static final String END = new String("end of file");
+	//the first few broken games are reported, not all of them
+	private static final int REPORTED_ERRORS = 10;
+
+	private final int threads;
+
+	/**
+	 * What an import found.
+	 */
+	public static final class Stats {
+		final AtomicLong games = new AtomicLong();
+		final AtomicLong valid = new AtomicLong();
+		final AtomicLong malformed = new AtomicLong();
+		final AtomicLong unsupported = new AtomicLong();
+		final AtomicLong plies = new AtomicLong();
+		long bytes;
+		long nanos;
+
+		public long games() {
+			return games.get();
+		}
+
+		/**
+		 * Return the number of games whose moves were all legal.
+		 *
+		 * @return the games replayed to the end
+		 */
+		public long valid() {
+			return valid.get();
+		}
+
+		/**
+		 * Return the number of games with a move that couldn't be read or isn't legal.
+		 *
+		 * @return the games stopped by a bad move
+		 */
+		public long malformed() {
+			return malformed.get();
+		}
+
+		/**
+		 * Return the number of games stopped by castling or en passant, which this model doesn't play.
+		 *
+		 * @return the games that needed a missing rule
+		 */
+		public long unsupported() {
+			return unsupported.get();
+		}
+
+		/**
+		 * Return the number of moves replayed, over all games including the moves before a bad one.
+		 *
+		 * @return the plies made on the workers' models
+		 */
+		public long plies() {
+			return plies.get();
+		}
+
+		public long bytes() {
+			return bytes;
+		}
+
+		public double seconds() {
+			return nanos / 1e9;
+		}
+
+		public double gamesPerSecond() {
+			return games() / Math.max(seconds(), 1e-9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d games (%d valid, %d malformed, %d unsupported), %d plies, %.1f MB in %.2f s, %.0f games/s",
+					games(), valid(), malformed(), unsupported(), plies(), bytes / 1e6, seconds(), gamesPerSecond());
+		}
+	}
+
+	public PgnImporter(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Replay every game of {@code file}.
+	 *
+	 * @param file the PGN file
+	 * @return the counts of the import
+	 * @throws IOException if the file can't be read
+	 */
+	public Stats importFile(Path file) throws IOException {
+		Stats stats = new Stats();
+		BlockingQueue<String> queue = new ArrayBlockingQueue<>(1024);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(() -> work(queue, stats), "pgn-worker-" + i);
+			workers[i].start();
+		}
+
+		long start = System.nanoTime();
+		StringBuilder game = new StringBuilder(4096);
+		try (PgnReader reader = new PgnReader(file)) {
+			while (reader.next(game))
+				put(queue, game.toString());
+			stats.bytes = reader.bytesRead();
+		} finally {
+			for (int i = 0; i < threads; i++)
+				put(queue, END);
+			for (Thread worker : workers) {
+				try {
+					worker.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			stats.nanos = System.nanoTime() - start;
+		}
+		return stats;
+	}
+
+	private static void put(BlockingQueue<String> queue, String game) {
+		try {
+			queue.put(game);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while importing", e);
+		}
+	}
+
+	private static void work(BlockingQueue<String> queue, Stats stats) {
+		ChessModel model = new ChessModel();
+		int[] buffer = new int[ChessModel.MAX_MOVES];
+		while (true) {
+			String game;
+			try {
+				game = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (game == END)
+				return;
+			long number = stats.games.incrementAndGet();
+			try {
+				stats.plies.addAndGet(replay(model, game, buffer));
+				stats.valid.incrementAndGet();
+			} catch (UnsupportedOperationException e) {
+				stats.plies.addAndGet(model.undoDepth());
+				stats.unsupported.incrementAndGet();
+			} catch (IllegalArgumentException e) {
+				stats.plies.addAndGet(model.undoDepth());
+				if (stats.malformed.incrementAndGet() <= REPORTED_ERRORS)
+					System.err.println("game " + number + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Play the moves of one game on {@code model}, from the starting position or the game's {@code FEN} tag.
+	 * Comments, variations, move numbers and annotation glyphs are skipped, and the game ends at its result.
+	 *
+	 * @param model  the model to play the game on, whose position is replaced
+	 * @param game   the tags and movetext of the game
+	 * @param buffer a move buffer of at least {@link ChessModel#MAX_MOVES}
+	 * @return the number of moves played
+	 * @throws IllegalArgumentException      if a move can't be read or isn't legal, or a tag is broken
+	 * @throws UnsupportedOperationException if the game castles or captures en passant
+	 */
+	public static int replay(ChessModel model, CharSequence game, int[] buffer) {
+		model.setFen(ChessModel.START_FEN);
+		int length = game.length();
+		int variations = 0;
+		int i = 0;
+		while (i < length) {
+			char ch = game.charAt(i);
+			if (Character.isWhitespace(ch)) {
+				i++;
+			} else if (ch == '{') {
+				i = skipPast(game, i, '}');
+			} else if (ch == ';') {
+				i = skipPast(game, i, '\n');
+			} else if (ch == '[') {
+				int end = skipPast(game, i, ']');
+				if (startsWith(game, i, "[FEN \"")) {
+					int quote = skipPast(game, i + 6, '"') - 1;
+					if (quote >= end)
+						throw new IllegalArgumentException("Broken FEN tag");
+					model.setFen(game.subSequence(i + 6, quote));
+				}
+				i = end;
+			} else if (ch == '(') {
+				variations++;
+				i++;
+			} else if (ch == ')') {
+				variations--;
+				i++;
+			} else {
+				int start = i;
+				while (i < length && !Character.isWhitespace(game.charAt(i)) && "{}();[".indexOf(game.charAt(i)) < 0)
+					i++;
+				if (isResult(game, start, i))
+					return model.undoDepth();
+				//move numbers may be written against the move, as in 1.e4
+				while (start < i && Character.isDigit(game.charAt(start)))
+					start++;
+				while (start < i && game.charAt(start) == '.')
+					start++;
+				if (start < i && variations == 0 && game.charAt(start) != '$')
+					model.makeMove(San.parse(model, game, start, i, buffer));
+			}
+		}
+		return model.undoDepth();
+	}
+
+	private static int skipPast(CharSequence text, int from, char end) {
+		while (from < text.length() && text.charAt(from) != end)
+			from++;
+		return from + 1;
+	}
+
+	private static boolean startsWith(CharSequence text, int from, String prefix) {
+		if (from + prefix.length() > text.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++) {
+			if (text.charAt(from + i) != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isResult(CharSequence text, int start, int end) {
+		int length = end - start;
+		return (length == 1 && text.charAt(start) == '*')
+				|| (length == 3 && (startsWith(text, start, "1-0") || startsWith(text, start, "0-1")))
+				|| (length == 7 && startsWith(text, start, "1/2-1/2"));
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: java chess.PgnImporter file.pgn [threads]");
+			System.exit(2);
+		}
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		System.out.println(new PgnImporter(threads).importFile(Path.of(args[0])));
+	}
+}
@@ -0,0 +1,99 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a PGN file into games without reading it all: the file is read through one fixed direct buffer, so files
+ * of any size take the same memory.  A game is its tag lines followed by its movetext, and ends where the next
+ * game's tag lines start.  Bytes are taken as ISO-8859-1 characters, which keeps the ASCII of the movetext intact.
+ */
+public final class PgnReader implements Closeable {
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+	private final StringBuilder line = new StringBuilder(256);
+	//line holds the first tag line of the next game
+	private boolean pending;
+	private long bytesRead;
+
+	public PgnReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		buffer.flip();
+	}
+
+	/**
+	 * Read the next game into {@code game}, replacing what it held.
+	 *
+	 * @param game where to put the tags and movetext of the game, one line per line of the file
+	 * @return {@code false} if the file has no more games
+	 * @throws IOException if the file can't be read
+	 */
+	public boolean next(StringBuilder game) throws IOException {
+		game.setLength(0);
+		boolean inMoves = false;
+		boolean content = false;
+		if (pending) {
+			game.append(line).append('\n');
+			pending = false;
+			content = true;
+		}
+		while (readLine()) {
+			if (line.length() > 0 && line.charAt(0) == '[') {
+				if (inMoves) {
+					pending = true;
+					return true;
+				}
+				content = true;
+			} else if (!isBlank(line)) {
+				inMoves = true;
+				content = true;
+			}
+			game.append(line).append('\n');
+		}
+		return content;
+	}
+
+	public long bytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//reads up to the next line break, which is dropped; false at the end of the file
+	private boolean readLine() throws IOException {
+		line.setLength(0);
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				buffer.clear();
+				int read = channel.read(buffer);
+				buffer.flip();
+				if (read < 0)
+					return line.length() > 0;
+				bytesRead += read;
+			}
+			byte b = buffer.get();
+			if (b == '\n')
+				return true;
+			if (b != '\r')
+				line.append((char) (b & 0xFF));
+		}
+	}
+
+	private static boolean isBlank(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (!Character.isWhitespace(text.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,69 @@
+package chess;
+
+/**
+ * The kinds of chess pieces, in the order used to index per-kind tables such as the bitboards and the Zobrist keys.
+ */
+public enum PieceKind {
+	PAWN("Pawn", 'P'), KNIGHT("Knight", 'N'), BISHOP("Bishop", 'B'), ROOK("Rook", 'R'), QUEEN("Queen", 'Q'), KING("King", 'K');
+
+	private final String type;
+	private final char letter;
+
+	PieceKind(String type, char letter) {
+		this.type = type;
+		this.letter = letter;
+	}
+
+	/**
+	 * Return the name of this kind as returned by {@link IChessPiece#type()}.
+	 *
+	 * @return the name of the piece ("King", "Queen", "Rook", etc.)
+	 */
+	public String type() {
+		return type;
+	}
+
+	/**
+	 * Return the letter of this kind in FEN and algebraic notation.
+	 *
+	 * @return the upper case letter ('K', 'Q', 'R', 'B', 'N' or 'P')
+	 */
+	public char letter() {
+		return letter;
+	}
+
+	/**
+	 * Return the kind with the given letter, in either case.
+	 *
+	 * @param letter a piece letter as returned by {@link #letter()}
+	 * @return the kind, or {@code null} if {@code letter} isn't a piece letter
+	 */
+	public static PieceKind ofLetter(char letter) {
+		switch (Character.toUpperCase(letter)) {
+			case 'P':
+				return PAWN;
+			case 'N':
+				return KNIGHT;
+			case 'B':
+				return BISHOP;
+			case 'R':
+				return ROOK;
+			case 'Q':
+				return QUEEN;
+			case 'K':
+				return KING;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Return a small number identifying both this kind and the player, from 0 to 11, suitable for indexing tables.
+	 *
+	 * @param player the player owning the piece
+	 * @return {@code 6 * player.ordinal() + ordinal()}
+	 */
+	public int code(Player player) {
+		return 6 * player.ordinal() + ordinal();
+	}
+}
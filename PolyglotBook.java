@@ -0,0 +1,247 @@
+package chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An opening book in Polyglot {@code .bin} format: 16-byte big-endian entries of position key, move, weight and
+ * learn value, sorted by key.  The file is memory-mapped read-only rather than loaded, so it takes no heap and the
+ * operating system shares its pages between every game and every JVM that opens it; {@link #open(Path)} also
+ * returns one shared instance per file.  Lookups are a binary search for the first entry of the key, then a
+ * weighted random pick among that key's entries.
+ *
+ * Positions are looked up by {@link PolyglotKey}, so books made by the Polyglot tools and others in the standard
+ * format can be used as they are.  Their castling moves, which Polyglot writes as the king taking its own rook, are
+ * never legal in this model and are skipped by {@link ChessModel#bookMove()}.
+ */
+public final class PolyglotBook {
+
+	public static final int ENTRY_BYTES = 16;
+
+	private static final ConcurrentHashMap<Path, PolyglotBook> OPEN = new ConcurrentHashMap<>();
+
+	//only read with absolute gets, so any number of threads can share it
+	private final ByteBuffer entries;
+	private final int size;
+
+	private PolyglotBook(ByteBuffer entries) {
+		this.entries = entries;
+		this.size = entries.capacity() / ENTRY_BYTES;
+	}
+
+	/**
+	 * Return the book in {@code file}, mapping it the first time it is asked for.  Later calls for the same file
+	 * return the same instance, which is safe to use from any number of threads.
+	 *
+	 * @param file the {@code .bin} file
+	 * @return the shared book
+	 * @throws IOException if the file can't be read or isn't a whole number of entries
+	 */
+	public static PolyglotBook open(Path file) throws IOException {
+		try {
+			return OPEN.computeIfAbsent(file.toRealPath(), path -> {
+				try {
+					return new PolyglotBook(map(path));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static MappedByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long bytes = channel.size();
+			if (bytes % ENTRY_BYTES != 0)
+				throw new IOException(file + " is not a Polyglot book: " + bytes + " bytes");
+			if (bytes > Integer.MAX_VALUE)
+				throw new IOException(file + " is too big to map: " + bytes + " bytes");
+			//the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			return buffer;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Pick a move for the position with {@code key}, each of the book's moves for it being chosen with a chance
+	 * proportional to its weight.
+	 *
+	 * @param key    the {@link PolyglotKey Polyglot key} of the position
+	 * @param random the source of randomness
+	 * @return the {@link PackedMove packed move}, or {@code 0} if the book has no move with a positive weight for
+	 *         the position
+	 */
+	public int probe(long key, Random random) {
+		int first = find(key);
+		if (first < 0)
+			return 0;
+		int total = 0;
+		int end = first;
+		for (; end < size && key(end) == key; end++)
+			total += weight(end);
+		if (total == 0)
+			return 0;
+		int pick = random.nextInt(total);
+		for (int i = first; i < end; i++) {
+			pick -= weight(i);
+			if (pick < 0)
+				return toPackedMove(move(i));
+		}
+		return 0;
+	}
+
+	/**
+	 * Return every move the book has for the position with {@code key}, in file order.
+	 *
+	 * @param key the {@link PolyglotKey Polyglot key} of the position
+	 * @return the {@link PackedMove packed moves}, empty if the position isn't in the book
+	 */
+	public int[] moves(long key) {
+		int first = find(key);
+		if (first < 0)
+			return new int[0];
+		int end = first;
+		while (end < size && key(end) == key)
+			end++;
+		int[] moves = new int[end - first];
+		for (int i = first; i < end; i++)
+			moves[i - first] = toPackedMove(move(i));
+		return moves;
+	}
+
+	//index of the first entry with key, or -1
+	private int find(long key) {
+		int low = 0;
+		int high = size;
+		//keys are compared unsigned, as the Polyglot tools sort them
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Long.compareUnsigned(key(middle), key) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low < size && key(low) == key ? low : -1;
+	}
+
+	private long key(int entry) {
+		return entries.getLong(entry * ENTRY_BYTES);
+	}
+
+	private int move(int entry) {
+		return entries.getShort(entry * ENTRY_BYTES + 8) & 0xFFFF;
+	}
+
+	private int weight(int entry) {
+		return entries.getShort(entry * ENTRY_BYTES + 10) & 0xFFFF;
+	}
+
+	/**
+	 * Convert a Polyglot move, which numbers rows from white's side (rank 1 is 0), to a {@link PackedMove}.
+	 *
+	 * @param move the 16-bit Polyglot move: to file, to rank, from file, from rank in 3 bits each, then promotion
+	 * @return the packed move
+	 */
+	public static int toPackedMove(int move) {
+		int to = (7 - ((move >> 3) & 7)) * 8 + (move & 7);
+		int from = (7 - ((move >> 9) & 7)) * 8 + ((move >> 6) & 7);
+		//Polyglot numbers the promotion pieces knight to queen from 1, like PieceKind
+		int promotion = (move >> 12) & 7;
+		return promotion == 0 ? PackedMove.of(from, to, 0) : PackedMove.of(from, to, PieceKind.values()[promotion], 0);
+	}
+
+	public static int fromPackedMove(int move) {
+		int from = PackedMove.from(move);
+		int to = PackedMove.to(move);
+		PieceKind promotion = PackedMove.promotion(move);
+		return (to & 7) | (7 - (to >> 3)) << 3 | (from & 7) << 6 | (7 - (from >> 3)) << 9
+				| (promotion == null ? 0 : promotion.ordinal()) << 12;
+	}
+
+	/**
+	 * Collects book entries and writes them sorted, as a Polyglot {@code .bin} file.
+	 */
+	public static final class Writer {
+		private long[] keys = new long[256];
+		private int[] moves = new int[256];
+		private int[] weights = new int[256];
+		private int count;
+
+		/**
+		 * Add a move for a position.  Adding the same move for the same position again adds to its weight.
+		 *
+		 * @param key    the {@link PolyglotKey Polyglot key} of the position
+		 * @param move   the {@link PackedMove packed move}
+		 * @param weight how often to play the move relative to the other moves of the position
+		 */
+		public void add(long key, int move, int weight) {
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, count * 2);
+				moves = Arrays.copyOf(moves, count * 2);
+				weights = Arrays.copyOf(weights, count * 2);
+			}
+			keys[count] = key;
+			moves[count] = fromPackedMove(move);
+			weights[count] = weight;
+			count++;
+		}
+
+		public void write(Path file) throws IOException {
+			//sort by key, then move, so duplicates are next to each other
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> {
+				int byKey = Long.compareUnsigned(keys[a], keys[b]);
+				return byKey != 0 ? byKey : Integer.compare(moves[a], moves[b]);
+			});
+
+			ByteBuffer out = ByteBuffer.allocate(count * ENTRY_BYTES);
+			for (int i = 0; i < count; ) {
+				int entry = order[i];
+				long weight = 0;
+				for (; i < count && keys[order[i]] == keys[entry] && moves[order[i]] == moves[entry]; i++)
+					weight += weights[order[i]];
+				out.putLong(keys[entry]);
+				out.putShort((short) moves[entry]);
+				out.putShort((short) Math.min(weight, 0xFFFF));
+				out.putInt(0);
+			}
+			out.flip();
+			//an earlier book in the file may still be mapped by other games, and truncating a mapped file can crash
+			//them, so write a new file and move it over the old one, whose mapping then lives on unlinked
+			Path target = file.toAbsolutePath();
+			Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+			try {
+				try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+					while (out.hasRemaining())
+						channel.write(out);
+				}
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(temporary);
+				throw e;
+			}
+			//forget any earlier mapping of the file, so the next open maps the new book
+			OPEN.remove(file.toRealPath());
+		}
+	}
+}
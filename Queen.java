@@ -7,8 +7,8 @@ public class Queen extends ChessPiece {
 
 	}
 
-	public String type() {
-		return "Queen";
+	public PieceKind kind() {
+		return PieceKind.QUEEN;
 
 	}
 
@@ -17,10 +17,7 @@ public class Queen extends ChessPiece {
 		if(!super.isValidMove(move, board))
 			return false;
 
-		//creates a bishop and a rook, whose movements combined equal the queen's movement
-		Bishop move1 = new Bishop(board[move.fromRow][move.fromColumn].player());
-		Rook move2 = new Rook(board[move.fromRow][move.fromColumn].player());
-		//invokes the bishop and rook isvalidmove methods to determine if the queen's move is valid
-		return (move1.isValidMove(move, board) || move2.isValidMove(move, board));
+		//the queen moves like a bishop or a rook, and can't pass through pieces either way
+		return (isStraight(move) || isDiagonal(move)) && pathClear(move, board);
 	}
 }
\ No newline at end of file
@@ -8,9 +8,9 @@ public class Rook extends ChessPiece {
 
 	}
 
-	public String type() {
+	public PieceKind kind() {
 
-		return "Rook";
+		return PieceKind.ROOK;
 
 	}
 
@@ -26,44 +26,9 @@ public class Rook extends ChessPiece {
 			return false;
 		}
 
-		//integer used to determine if the rook is moving up or down
-		int diff = move.toRow - move.fromRow;
-
-		//if statements for checking if the rook will pass through a piece, returning invalid if true
-		//up
-		if(diff < 0){
-			for(int i = -1; i > diff; i--){
-				if(board[move.fromRow+i][move.fromColumn] != null){
-					return false;
-				}
-			}
-		}
-		//down
-		if(diff > 0){
-			for(int i = 1; i < diff; i++){
-				if(board[move.fromRow+i][move.fromColumn] != null){
-					return false;
-				}
-			}
-		}
-		//integer used to determine if rook is moving left or right
-
-		//left
-		int diffc = move.toColumn - move.fromColumn;
-		if(diffc < 0){
-			for(int i = -1; i > diffc; i--){
-				if(board[move.fromRow][move.fromColumn+i] != null){
-					return false;
-				}
-			}
-		}
-		//right
-		if(diffc > 0){
-			for(int i = 1; i < diffc; i++){
-				if(board[move.fromRow][move.fromColumn+i] != null){
-					return false;
-				}
-			}
+		//checks if the rook will pass through a piece, returning invalid if true
+		if(!pathClear(move, board)){
+			return false;
 		}
 		return valid;
 
@@ -0,0 +1,100 @@
+package chess;
+
+/**
+ * Standard algebraic notation, as used in PGN movetext: {@code e4}, {@code Nbd7}, {@code exd5}, {@code R1xa3+},
+ * {@code e8=Q#}.
+ *
+ * Moves are read straight from a range of a {@code CharSequence} and resolved against the legal moves of the model,
+ * so nothing is allocated unless the text is wrong.
+ */
+public final class San {
+
+	private San() {
+	}
+
+	/**
+	 * Find the legal move of the current player that {@code text[start, end)} describes.  Check and annotation
+	 * suffixes ({@code + # ! ?}) are ignored.  A pawn move to the last row without a promotion piece is taken as a
+	 * queen promotion.
+	 *
+	 * @param model  the position
+	 * @param text   the text holding the move
+	 * @param start  the index of the first character of the move
+	 * @param end    the index after the last character of the move
+	 * @param buffer a move buffer of at least {@link ChessModel#MAX_MOVES}, overwritten
+	 * @return the {@link PackedMove packed move}
+	 * @throws IllegalArgumentException      if the text is not a move, or not exactly one legal move matches it
+	 * @throws UnsupportedOperationException if the move is castling or an en passant capture, which this model
+	 *                                       doesn't have
+	 */
+	public static int parse(ChessModel model, CharSequence text, int start, int end, int[] buffer) {
+		while (end > start && "+#!?".indexOf(text.charAt(end - 1)) >= 0)
+			end--;
+		if (end - start < 2)
+			throw error("Not a move", text, start, end);
+		if (text.charAt(start) == 'O' || text.charAt(start) == '0')
+			throw new UnsupportedOperationException("Castling is not supported: " + text.subSequence(start, end));
+
+		int i = start;
+		PieceKind kind = PieceKind.PAWN;
+		if ("NBRQK".indexOf(text.charAt(i)) >= 0)
+			kind = PieceKind.ofLetter(text.charAt(i++));
+		PieceKind promotion = null;
+		if (kind == PieceKind.PAWN && "NBRQ".indexOf(text.charAt(end - 1)) >= 0) {
+			promotion = PieceKind.ofLetter(text.charAt(--end));
+			if (text.charAt(end - 1) == '=')
+				end--;
+		}
+		if (end - i < 2)
+			throw error("Not a move", text, start, end);
+		int toColumn = text.charAt(end - 2) - 'a';
+		int toRow = '8' - text.charAt(end - 1);
+		if (toColumn < 0 || toColumn > 7 || toRow < 0 || toRow > 7)
+			throw error("Not a square", text, start, end);
+		int to = toRow * 8 + toColumn;
+
+		//what is between the piece and the square: the file and/or rank of the piece, and the capture sign
+		int fromColumn = -1;
+		int fromRow = -1;
+		boolean capture = false;
+		for (int j = i; j < end - 2; j++) {
+			char ch = text.charAt(j);
+			if (ch >= 'a' && ch <= 'h')
+				fromColumn = ch - 'a';
+			else if (ch >= '1' && ch <= '8')
+				fromRow = '8' - ch;
+			else if (ch == 'x')
+				capture = true;
+			else
+				throw error("Not a move", text, start, end);
+		}
+
+		//the legality check is the expensive part, so it is left to the moves that match the text
+		int count = model.pseudoLegalMoves(model.currentPlayer(), buffer);
+		int found = 0;
+		for (int j = 0; j < count; j++) {
+			int move = buffer[j];
+			int from = PackedMove.from(move);
+			if (PackedMove.to(move) != to || model.pieceAt(from >> 3, from & 7).kind() != kind)
+				continue;
+			if ((fromColumn >= 0 && (from & 7) != fromColumn) || (fromRow >= 0 && from >> 3 != fromRow))
+				continue;
+			PieceKind promotes = PackedMove.promotion(move);
+			if ((promotes != promotion && !(promotion == null && promotes == PieceKind.QUEEN)) || !model.isLegal(move))
+				continue;
+			if (found != 0)
+				throw error("Ambiguous move", text, start, end);
+			found = move;
+		}
+		if (found == 0) {
+			if (kind == PieceKind.PAWN && capture && model.pieceAt(toRow, toColumn) == null)
+				throw new UnsupportedOperationException("En passant is not supported: " + text.subSequence(start, end));
+			throw error("Illegal move", text, start, end);
+		}
+		return found;
+	}
+
+	private static IllegalArgumentException error(String problem, CharSequence text, int start, int end) {
+		return new IllegalArgumentException(problem + ": " + text.subSequence(start, end));
+	}
+}
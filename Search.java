@@ -0,0 +1,590 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Negamax search with alpha-beta pruning and iterative deepening, used by {@link ChessModel#AI()} to pick a move
+ * for the player whose turn it is.
+ *
+ * The search runs on the model itself with {@link ChessModel#makeMove(int)} and {@link ChessModel#unmakeMove()}, so
+ * the board is back where it started when {@link #search()} returns.  Moves are {@link PackedMove packed} into ints
+ * and generated into one preallocated buffer per ply, so searching does not allocate.  It stops when it has finished
+ * {@link #setDepthLimit(int) depth limit} iterations, visited {@link #setNodeLimit(long) node limit} nodes or
+ * ran for {@link #setTimeLimit(long) time limit} milliseconds, whichever comes first, or when {@link #stop()} is
+ * called from another thread.
+ *
+ * With {@link #setThreads(int) more than one thread} the search is a "lazy SMP" search: helper threads search copies
+ * of the same root position, half of them one ply deeper, and share results only through the transposition table,
+ * which tolerates concurrent writes without locking.  The move played is the one found by the calling thread.
+ */
+public class Search {
+
+	public static final int MAX_PLY = 64;
+	public static final int MATE = 100000;
+	private static final int INFINITY = 1000000;
+
+	//indexed by PieceKind.ordinal()
+	private static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+
+	//default table size for an engine that isn't given one
+	private static final long DEFAULT_TABLE_BYTES = 1 << 20;
+	//how many nodes a thread may search between looks at the shared node count and stop flag
+	private static final int CHECK_INTERVAL = 1024;
+
+	private final ChessModel model;
+	private TranspositionTable table;
+	private int depthLimit = 4;
+	private long nodeLimit = 2000000;
+	private long timeLimit;
+	private Consumer<Search> listener;
+
+	private int threads = 1;
+	private Search[] helpers = new Search[0];
+	private ExecutorService helperPool;
+	private int firstDepth = 1;
+
+	//state shared by the threads of one search
+	private static final class Shared {
+		final AtomicLong nodes = new AtomicLong();
+		final int threads;
+		//System.nanoTime() to stop at, or 0 for no time limit
+		final long deadline;
+		volatile boolean stop;
+
+		Shared(int threads, long deadline) {
+			this.threads = threads;
+			this.deadline = deadline;
+		}
+	}
+
+	private volatile Shared shared;
+	//set by stop() and kept until clearStop(), so a stop that comes before search() has started isn't lost
+	private volatile boolean stopRequested;
+	private long nodes;
+	private long flushedNodes;
+	private long nextCheck;
+	private long totalNodes;
+	private boolean aborted;
+	private int completedDepth;
+	private int score;
+	//transposition table counters of this thread, plain fields so the threads never write the same memory
+	private long tableProbes;
+	private long tableHits;
+	private long tableCollisions;
+	private long tableStores;
+	private int rootScore;
+
+	//triangular principal variation table, pv[ply][ply..pvLength[ply]) is the best line found from ply
+	private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+	private final int[] pvLength = new int[MAX_PLY + 1];
+	private final int[] bestLine = new int[MAX_PLY];
+	private int bestLineLength;
+	//move buffers and their ordering scores, one per ply
+	private final int[][] moves = new int[MAX_PLY + 1][ChessModel.MAX_MOVES];
+	private final int[][] orderScores = new int[MAX_PLY + 1][ChessModel.MAX_MOVES];
+
+	public Search(ChessModel model) {
+		this(model, new TranspositionTable(DEFAULT_TABLE_BYTES));
+	}
+
+	public Search(ChessModel model, TranspositionTable table) {
+		this.model = model;
+		this.table = table;
+	}
+
+	/**
+	 * Replace the transposition table, for instance with a bigger one or one shared by several engines.
+	 *
+	 * @param table the table to use from the next search on
+	 */
+	public void setTable(TranspositionTable table) {
+		this.table = table;
+	}
+
+	public TranspositionTable table() {
+		return table;
+	}
+
+	public void setDepthLimit(int depthLimit) {
+		this.depthLimit = Math.max(1, Math.min(depthLimit, MAX_PLY));
+	}
+
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+	}
+
+	/**
+	 * Limit how long each search may run.  The search stops at the first look at its limits after the time is up,
+	 * which is at most {@code 1024} nodes later.
+	 *
+	 * @param millis the time limit in milliseconds, or {@code 0} for none
+	 */
+	public void setTimeLimit(long millis) {
+		this.timeLimit = Math.max(0, millis);
+	}
+
+	/**
+	 * Set a listener to tell about the progress of each search.  It is called on the thread calling
+	 * {@link #search()} after every completed iteration, when {@link #completedDepth()}, {@link #score()},
+	 * {@link #nodes()} and the {@link #principalVariation() principal variation} describe that iteration.
+	 *
+	 * @param listener the listener, or {@code null} for none
+	 */
+	public void setListener(Consumer<Search> listener) {
+		this.listener = listener;
+	}
+
+	public int depthLimit() {
+		return depthLimit;
+	}
+
+	public long nodeLimit() {
+		return nodeLimit;
+	}
+
+	public long timeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * Set how many threads search each position.  Helper threads are started once and kept for later searches.
+	 *
+	 * @param threads the number of threads, including the one calling {@link #search()}
+	 */
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		if (threads == this.threads)
+			return;
+		if (helperPool != null)
+			helperPool.shutdownNow();
+		this.threads = threads;
+		helpers = new Search[threads - 1];
+		helperPool = null;
+		if (threads > 1) {
+			for (int i = 0; i < helpers.length; i++) {
+				helpers[i] = new Search(new ChessModel(model), table);
+				//odd helpers start one ply deeper so the threads don't all search the same depth
+				helpers[i].firstDepth = 1 + (i + 1) % 2;
+			}
+			helperPool = Executors.newFixedThreadPool(helpers.length, runnable -> {
+				Thread thread = new Thread(runnable, "search-helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	public int threads() {
+		return threads;
+	}
+
+	/**
+	 * Ask the search to stop as soon as possible.  Can be called from any thread; {@link #search()} then returns the
+	 * best move found so far.  The request holds until {@link #clearStop()}, so a search that has not started yet
+	 * stops as soon as it starts.
+	 */
+	public void stop() {
+		stopRequested = true;
+		Shared current = shared;
+		if (current != null)
+			current.stop = true;
+	}
+
+	/**
+	 * Forget an earlier {@link #stop()}, so the next search runs to its limits.  Call it before handing the search
+	 * to the thread that runs it, not on that thread, or a stop sent in between is lost.
+	 */
+	public void clearStop() {
+		stopRequested = false;
+	}
+
+	/**
+	 * Search the current position for the player whose turn it is.
+	 *
+	 * @return the best move found, or {@code null} if the player has no legal move
+	 */
+	public Move search() {
+		long deadline = timeLimit > 0 ? (System.nanoTime() + timeLimit * 1000000) | 1 : 0;
+		Shared current = new Shared(threads, deadline);
+		//publish before looking at the request, so that stop() either sees this search or is seen by it
+		shared = current;
+		if (stopRequested)
+			current.stop = true;
+		table.newSearch();
+		List<Future<?>> running = new ArrayList<>(helpers.length);
+		for (Search helper : helpers) {
+			helper.model.copyFrom(model);
+			helper.table = table;
+			helper.depthLimit = depthLimit;
+			helper.nodeLimit = nodeLimit;
+			running.add(helperPool.submit(() -> helper.iterate(current)));
+		}
+		try {
+			iterate(current);
+		} finally {
+			current.stop = true;
+			for (Future<?> helper : running) {
+				try {
+					helper.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Search helper failed", e.getCause());
+				}
+			}
+		}
+		totalNodes = current.nodes.get();
+		return bestLineLength > 0 ? PackedMove.toMove(bestLine[0]) : null;
+	}
+
+	/**
+	 * Return the move found by the last call to {@link #search()} as a {@link PackedMove packed move}, which unlike
+	 * the returned {@link Move} keeps the promotion piece.
+	 *
+	 * @return the best move, or {@code 0} if the player had no legal move
+	 */
+	public int bestMove() {
+		return bestLineLength > 0 ? bestLine[0] : 0;
+	}
+
+	private void iterate(Shared current) {
+		//the calling thread has published it already, the helpers do it here
+		shared = current;
+		nodes = 0;
+		flushedNodes = 0;
+		nextCheck = 0;
+		aborted = false;
+		completedDepth = 0;
+		bestLineLength = 0;
+		score = 0;
+		tableProbes = tableHits = tableCollisions = tableStores = 0;
+
+		for (int depth = firstDepth; depth <= depthLimit; depth++) {
+			int value = negamax(depth, -INFINITY, INFINITY, 0);
+			if (aborted) {
+				//root moves are searched best-first, so any move already completed is at least as good as the last
+				//iteration's choice
+				if (pvLength[0] > 0) {
+					score = rootScore;
+					bestLineLength = pvLength[0];
+					System.arraycopy(pv[0], 0, bestLine, 0, bestLineLength);
+				}
+				break;
+			}
+			score = value;
+			bestLineLength = pvLength[0];
+			System.arraycopy(pv[0], 0, bestLine, 0, bestLineLength);
+			completedDepth = depth;
+			if (listener != null) {
+				totalNodes = current.nodes.get() + nodes - flushedNodes;
+				listener.accept(this);
+			}
+			//no point looking deeper once a forced mate has been found
+			if (Math.abs(value) >= MATE - MAX_PLY)
+				break;
+		}
+		current.nodes.addAndGet(nodes - flushedNodes);
+		flushedNodes = nodes;
+	}
+
+	//counts a node and reports whether the search has to stop, looking at the shared state only now and then
+	private boolean countNode() {
+		if (++nodes < nextCheck)
+			return false;
+		long total = shared.nodes.addAndGet(nodes - flushedNodes);
+		flushedNodes = nodes;
+		long remaining = nodeLimit - total;
+		if (remaining <= 0 || (shared.deadline != 0 && System.nanoTime() - shared.deadline >= 0))
+			shared.stop = true;
+		if (shared.stop) {
+			aborted = true;
+			return true;
+		}
+		nextCheck = nodes + Math.max(1, Math.min(CHECK_INTERVAL, remaining / shared.threads));
+		return false;
+	}
+
+	/**
+	 * Return the best line found by the last call to {@link #search()}, starting with the move it returned.
+	 *
+	 * @return the principal variation
+	 */
+	public List<Move> principalVariation() {
+		List<Move> line = new ArrayList<>(bestLineLength);
+		for (int i = 0; i < bestLineLength; i++)
+			line.add(PackedMove.toMove(bestLine[i]));
+		return line;
+	}
+
+	/**
+	 * Return the best line found by the last call to {@link #search()} as {@link PackedMove packed moves}, which
+	 * keep the promotion pieces.
+	 *
+	 * @return the principal variation
+	 */
+	public int[] packedPrincipalVariation() {
+		return Arrays.copyOf(bestLine, bestLineLength);
+	}
+
+	/**
+	 * Return the score of the last search in centipawns from the point of view of the player who was to move;
+	 * scores beyond {@code MATE - MAX_PLY} mean a forced mate.
+	 *
+	 * @return the score of the best move
+	 */
+	public int score() {
+		return score;
+	}
+
+	/**
+	 * Return the number of nodes visited by the last search, summed over all of its threads.
+	 *
+	 * @return the node count
+	 */
+	public long nodes() {
+		return totalNodes;
+	}
+
+	public int completedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Return how many times the last search looked a position up in the transposition table, summed over all of
+	 * its threads.
+	 *
+	 * @return the number of table probes
+	 */
+	public long tableProbes() {
+		long probes = tableProbes;
+		for (Search helper : helpers)
+			probes += helper.tableProbes;
+		return probes;
+	}
+
+	public long tableHits() {
+		long hits = tableHits;
+		for (Search helper : helpers)
+			hits += helper.tableHits;
+		return hits;
+	}
+
+	/**
+	 * Return how many table probes of the last search missed although the bucket held another position.
+	 *
+	 * @return the number of index collisions, summed over all threads
+	 */
+	public long tableCollisions() {
+		long collisions = tableCollisions;
+		for (Search helper : helpers)
+			collisions += helper.tableCollisions;
+		return collisions;
+	}
+
+	public long tableStores() {
+		long stores = tableStores;
+		for (Search helper : helpers)
+			stores += helper.tableStores;
+		return stores;
+	}
+
+	private int negamax(int depth, int alpha, int beta, int ply) {
+		pvLength[ply] = ply;
+		if (depth <= 0 || ply >= MAX_PLY)
+			return quiescence(alpha, beta, ply);
+		if (countNode())
+			return 0;
+
+		//below the root, positions the tablebase knows are scored without searching
+		Tablebase tablebase = model.tablebase();
+		if (tablebase != null && ply > 0) {
+			int entry = tablebase.probe(model, model.currentPlayer());
+			if (entry != Tablebase.NOT_FOUND)
+				return tablebaseScore(entry, ply);
+		}
+
+		long key = model.zobristKey();
+		long entry = table.probe(key);
+		tableProbes++;
+		if (entry != 0)
+			tableHits++;
+		else if (table.isOccupied(key))
+			tableCollisions++;
+		int hashMove = entry != 0 ? TranspositionTable.move(entry) : 0;
+		if (entry != 0 && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+			int value = fromTable(TranspositionTable.score(entry), ply);
+			int bound = TranspositionTable.bound(entry);
+			if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && value >= beta)
+					|| (bound == TranspositionTable.UPPER && value <= alpha))
+				return value;
+		}
+
+		Player side = model.currentPlayer();
+		int[] moves = this.moves[ply];
+		int count = model.pseudoLegalMoves(side, moves);
+		order(moves, count, ply, hashMove != 0 ? hashMove : ply < bestLineLength ? PackedMove.key(bestLine[ply]) : 0);
+
+		int originalAlpha = alpha;
+		int legal = 0;
+		int best = -INFINITY;
+		int bestMove = 0;
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			model.makeMove(move);
+			if (model.inCheck(side)) {
+				model.unmakeMove();
+				continue;
+			}
+			legal++;
+			int value = -negamax(depth - 1, -beta, -alpha, ply + 1);
+			model.unmakeMove();
+			if (aborted)
+				return 0;
+
+			if (value > best) {
+				best = value;
+				bestMove = move;
+				if (value > alpha) {
+					alpha = value;
+					updatePv(ply, move);
+					if (ply == 0)
+						rootScore = value;
+					if (alpha >= beta)
+						break;
+				}
+			}
+		}
+
+		if (legal == 0)
+			return model.inCheck(side) ? -MATE + ply : 0;
+
+		int bound = best >= beta ? TranspositionTable.LOWER : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+		table.store(key, PackedMove.key(bestMove), toTable(best, ply), depth, bound);
+		tableStores++;
+		return best;
+	}
+
+	//the same mate scores the search gives, counted from the root
+	private static int tablebaseScore(int entry, int ply) {
+		int wdl = Tablebase.wdl(entry);
+		if (wdl == Tablebase.WIN)
+			return MATE - ply - Tablebase.pliesToMate(entry);
+		if (wdl == Tablebase.LOSS)
+			return -MATE + ply + Tablebase.pliesToMate(entry);
+		return 0;
+	}
+
+	//mate scores are stored relative to the position, not to the root, so they stay valid wherever it is reached
+	private static int toTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY)
+			return score + ply;
+		if (score <= -MATE + MAX_PLY)
+			return score - ply;
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY)
+			return score - ply;
+		if (score <= -MATE + MAX_PLY)
+			return score + ply;
+		return score;
+	}
+
+	//only captures are searched past the horizon, so the last move of a line is never a hanging capture
+	private int quiescence(int alpha, int beta, int ply) {
+		if (countNode())
+			return 0;
+		int standPat = evaluate();
+		if (standPat >= beta || ply >= MAX_PLY)
+			return standPat;
+		if (standPat > alpha)
+			alpha = standPat;
+
+		Player side = model.currentPlayer();
+		int[] moves = this.moves[ply];
+		int count = model.captureMoves(side, moves);
+		order(moves, count, ply, 0);
+
+		for (int i = 0; i < count; i++) {
+			model.makeMove(moves[i]);
+			if (model.inCheck(side)) {
+				model.unmakeMove();
+				continue;
+			}
+			int value = -quiescence(-beta, -alpha, ply + 1);
+			model.unmakeMove();
+			if (aborted)
+				return 0;
+			if (value > alpha) {
+				alpha = value;
+				if (alpha >= beta)
+					break;
+			}
+		}
+		return alpha;
+	}
+
+	private void updatePv(int ply, int move) {
+		pv[ply][ply] = move;
+		for (int i = ply + 1; i < pvLength[ply + 1]; i++)
+			pv[ply][i] = pv[ply + 1][i];
+		pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+	}
+
+	//table or principal variation move first, then captures of the most valuable victim by the least valuable
+	//attacker, then promotions
+	private void order(int[] moves, int count, int ply, int firstMove) {
+		int[] scores = orderScores[ply];
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int to = PackedMove.to(move);
+			PieceKind promotion = PackedMove.promotion(move);
+			int score = 0;
+			if (firstMove != 0 && PackedMove.key(move) == firstMove) {
+				score = INFINITY;
+			} else {
+				if (PackedMove.isCapture(move)) {
+					int from = PackedMove.from(move);
+					score = 10 * value(model.pieceAt(to >> 3, to & 7)) - value(model.pieceAt(from >> 3, from & 7)) / 10;
+				}
+				if (promotion != null)
+					score += VALUES[promotion.ordinal()];
+			}
+			scores[i] = score;
+		}
+		//insertion sort, the lists are short and mostly zero scores
+		for (int i = 1; i < count; i++) {
+			int move = moves[i];
+			int key = scores[i];
+			int j = i - 1;
+			while (j >= 0 && scores[j] < key) {
+				scores[j + 1] = scores[j];
+				moves[j + 1] = moves[j];
+				j--;
+			}
+			scores[j + 1] = key;
+			moves[j + 1] = move;
+		}
+	}
+
+	//the model keeps its evaluation up to date move by move, so this is a read; checked against a full rescan when
+	//assertions are on
+	private int evaluate() {
+		int score = model.evaluate();
+		assert score == model.computeEvaluation() : "incremental evaluation " + score + " != " + model.computeEvaluation();
+		return score;
+	}
+
+	private static int value(IChessPiece piece) {
+		return VALUES[piece.kind().ordinal()];
+	}
+}
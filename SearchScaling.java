@@ -0,0 +1,51 @@
+package chess;
+
+/**
+ * Command line tool that measures how the search speed scales with the number of threads.
+ *
+ * Usage: {@code java chess.SearchScaling [depth] [maxThreads] [tableMegabytes]}
+ *
+ * For 1, 2, 4, ... up to {@code maxThreads} threads (the number of cores by default) it searches a few fixed
+ * positions to the given depth with a fresh table and prints the nodes per second, both in total and per thread.
+ */
+public class SearchScaling {
+
+	//opening lines played from the starting position, as fromRow, fromColumn, toRow, toColumn
+	private static final int[][][] POSITIONS = {
+			{},
+			{{6, 4, 4, 4}, {1, 4, 3, 4}, {7, 6, 5, 5}, {0, 1, 2, 2}, {7, 5, 4, 2}, {0, 6, 2, 5}},
+			{{6, 3, 4, 3}, {1, 3, 3, 3}, {6, 2, 4, 2}, {1, 4, 2, 4}, {7, 1, 5, 2}, {0, 6, 2, 5}, {7, 2, 3, 6}, {0, 5, 1, 4}},
+	};
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long tableBytes = (args.length > 2 ? Long.parseLong(args[2]) : 64) << 20;
+
+		System.out.printf("%7s %12s %9s %10s %14s %8s%n", "threads", "nodes", "ms", "knps", "knps/thread", "speedup");
+		double baseline = 0;
+		for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+			long nodes = 0;
+			long start = System.nanoTime();
+			for (int[][] line : POSITIONS) {
+				ChessModel model = new ChessModel();
+				for (int[] m : line)
+					model.makeMove(new Move(m[0], m[1], m[2], m[3]));
+				Search search = new Search(model, new TranspositionTable(tableBytes));
+				search.setDepthLimit(depth);
+				search.setNodeLimit(Long.MAX_VALUE);
+				search.setThreads(threads);
+				search.search();
+				search.setThreads(1);
+				nodes += search.nodes();
+			}
+			long ms = Math.max(1, (System.nanoTime() - start) / 1000000);
+			double knps = (double) nodes / ms;
+			if (threads == 1)
+				baseline = knps;
+			System.out.printf("%7d %12d %9d %10.0f %14.0f %7.2fx%n", threads, nodes, ms, knps, knps / threads, knps / baseline);
+			if (threads == maxThreads)
+				break;
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Endgame tablebases for king and queen, king and rook, and king and pawn against a lone king, built by retrograde
+ * analysis and probed from memory-mapped files.
+ *
+ * Positions are indexed from the side with the extra piece, which is turned into white by flipping the board
+ * top to bottom if needed: {@code sideToMove << 18 | strongKing << 12 | weakKing << 6 | piece}, with side to move 0
+ * for the strong side and squares numbered {@code row * 8 + column}.  Each position takes one byte: the result for
+ * the side to move ({@link #DRAW}, {@link #WIN}, {@link #LOSS}, or 3 for a position that can't occur) in the low two
+ * bits and the number of moves to mate in the other six, so every file is 512 KiB.
+ *
+ * The tables are solved one ply at a time: first the positions where the side to move is mated, then those where a
+ * move reaches one of them, then those where every move reaches a position already won for the opponent, and so on
+ * until a round finds nothing new.  Each round goes over all positions in parallel.  A pawn that promotes leads into
+ * the queen and rook tables, which are solved first; a bishop or knight promotion and the capture of the last
+ * piece are draws.
+ *
+ * Usage: {@code java chess.Tablebase directory}
+ */
+public final class Tablebase {
+
+	public static final int DRAW = 0;
+	public static final int WIN = 1;
+	public static final int LOSS = 2;
+	private static final int ILLEGAL = 3;
+
+	public static final int NOT_FOUND = -1;
+
+	private static final int SIZE = 2 << 18;
+	private static final int WEAK_TO_MOVE = 1 << 18;
+	private static final PieceKind[] ENDINGS = {PieceKind.QUEEN, PieceKind.ROOK, PieceKind.PAWN};
+
+	//values used while solving: plies to mate, odd when the side to move wins, even when it loses
+	private static final int UNKNOWN = -1;
+	private static final int NO_POSITION = -2;
+	private static final int DRAWN = -3;
+
+	//indexed by PieceKind.ordinal(), null for endings without a file
+	private final ByteBuffer[] tables = new ByteBuffer[6];
+
+	private Tablebase() {
+	}
+
+	/**
+	 * Map the tablebase files found in {@code directory}.  Endings without a file are not probed.
+	 *
+	 * @param directory the directory written by {@link #write(Path)}
+	 * @return the tablebase, which is read-only and can be shared by any number of models and threads
+	 * @throws IOException if a file can't be read or has the wrong size
+	 */
+	public static Tablebase open(Path directory) throws IOException {
+		Tablebase tablebase = new Tablebase();
+		for (PieceKind kind : ENDINGS) {
+			Path file = directory.resolve(fileName(kind));
+			if (!Files.exists(file))
+				continue;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				if (channel.size() != SIZE)
+					throw new IOException(file + " is not a tablebase: " + channel.size() + " bytes");
+				tablebase.tables[kind.ordinal()] = channel.map(FileChannel.MapMode.READ_ONLY, 0, SIZE);
+			}
+		}
+		return tablebase;
+	}
+
+	/**
+	 * Look up the position of {@code model} with {@code toMove} to move.
+	 *
+	 * @param model  the position
+	 * @param toMove the player to move, which needn't be the model's current player
+	 * @return the byte stored for the position, to read with {@link #wdl(int)} and {@link #movesToMate(int)}, or
+	 *         {@link #NOT_FOUND} if the position isn't one of the tablebase's endings or can't occur
+	 */
+	public int probe(ChessModel model, Player toMove) {
+		if (Long.bitCount(model.occupied()) != 3)
+			return NOT_FOUND;
+		for (Player strong : Player.values()) {
+			for (PieceKind kind : ENDINGS) {
+				long piece = model.bitboard(kind, strong);
+				if (piece == 0 || tables[kind.ordinal()] == null)
+					continue;
+				long strongKing = model.bitboard(PieceKind.KING, strong);
+				long weakKing = model.bitboard(PieceKind.KING, strong.next());
+				if (strongKing == 0 || weakKing == 0)
+					return NOT_FOUND;
+				//the strong side is white in the tables
+				int flip = strong == Player.WHITE ? 0 : 56;
+				int index = (toMove == strong ? 0 : WEAK_TO_MOVE) | (Long.numberOfTrailingZeros(strongKing) ^ flip) << 12
+						| (Long.numberOfTrailingZeros(weakKing) ^ flip) << 6 | (Long.numberOfTrailingZeros(piece) ^ flip);
+				int entry = tables[kind.ordinal()].get(index) & 0xFF;
+				return wdl(entry) == ILLEGAL ? NOT_FOUND : entry;
+			}
+		}
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Return the result stored in a tablebase entry.
+	 *
+	 * @param entry a value returned by {@link #probe}
+	 * @return {@link #WIN}, {@link #DRAW} or {@link #LOSS} for the side to move
+	 */
+	public static int wdl(int entry) {
+		return entry & 3;
+	}
+
+	/**
+	 * Return how many moves the winning side needs to mate with best play, 0 if the side to move is mated.
+	 *
+	 * @param entry a value returned by {@link #probe}
+	 * @return the moves to mate, 0 for a draw
+	 */
+	public static int movesToMate(int entry) {
+		return entry >>> 2;
+	}
+
+	/**
+	 * Return how many plies are left until mate with best play, counting both sides' moves.
+	 *
+	 * @param entry a value returned by {@link #probe}
+	 * @return the plies to mate, 0 for a draw
+	 */
+	public static int pliesToMate(int entry) {
+		int moves = movesToMate(entry);
+		return wdl(entry) == WIN ? 2 * moves - 1 : wdl(entry) == LOSS ? 2 * moves : 0;
+	}
+
+	/**
+	 * Solve every ending and write one file per ending into {@code directory}.
+	 *
+	 * @param directory where to write the files, created if needed
+	 * @throws IOException if a file can't be written
+	 */
+	public static void write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		int[] queen = solve(PieceKind.QUEEN, null);
+		int[] rook = solve(PieceKind.ROOK, null);
+		int[] pawn = solve(PieceKind.PAWN, new int[][] {null, null, null, rook, queen, null});
+		Files.write(directory.resolve(fileName(PieceKind.QUEEN)), pack(queen));
+		Files.write(directory.resolve(fileName(PieceKind.ROOK)), pack(rook));
+		Files.write(directory.resolve(fileName(PieceKind.PAWN)), pack(pawn));
+	}
+
+	private static String fileName(PieceKind kind) {
+		return "K" + kind.letter() + "K.tb";
+	}
+
+	private static byte[] pack(int[] values) {
+		byte[] packed = new byte[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			int value = values[i];
+			if (value == NO_POSITION) {
+				packed[i] = ILLEGAL;
+			} else if (value >= 0) {
+				//a win in n moves takes 2n - 1 plies, a loss in n moves 2n
+				int moves = (value + 1) / 2;
+				if (moves > 63)
+					throw new IllegalStateException("Mate in " + moves + " doesn't fit in the tablebase format");
+				packed[i] = (byte) ((value % 2 == 1 ? WIN : LOSS) | moves << 2);
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * Solve one ending by retrograde analysis.
+	 *
+	 * @param kind       the strong side's piece
+	 * @param promotions for a pawn, the solved tables of the pieces it can promote to, indexed by
+	 *                   {@link PieceKind#ordinal()}, with {@code null} for draws
+	 * @return plies to mate for each position, or {@link #DRAWN} or {@link #NO_POSITION}
+	 */
+	static int[] solve(PieceKind kind, int[][] promotions) {
+		Solver solver = new Solver(kind, promotions);
+		int[] values = solver.values;
+		//chunks of one strong king square, each with its own successor buffer
+		IntStream.range(0, SIZE >> 12).parallel().forEach(chunk -> {
+			int[] successors = new int[64];
+			for (int index = chunk << 12; index < (chunk + 1) << 12; index++) {
+				int count = solver.successors(index, successors);
+				if (count < 0)
+					values[index] = NO_POSITION;
+				else if (count == 0)
+					values[index] = solver.inCheck(index) ? 0 : DRAWN;
+			}
+		});
+
+		//a pawn can reach a promotion table at any distance, so keep going at least until their longest mates
+		int longest = 0;
+		for (int i = 0; promotions != null && i < promotions.length; i++) {
+			for (int j = 0; promotions[i] != null && j < SIZE; j++)
+				longest = Math.max(longest, promotions[i][j]);
+		}
+		int quiet = 0;
+		for (int plies = 1; quiet < 2 || plies <= longest + 1; plies++) {
+			int ply = plies;
+			int found = IntStream.range(0, SIZE >> 12).parallel().map(chunk -> {
+				int[] successors = new int[64];
+				int changed = 0;
+				for (int index = chunk << 12; index < (chunk + 1) << 12; index++) {
+					if (values[index] == UNKNOWN && solver.solvesIn(index, ply, successors)) {
+						values[index] = ply;
+						changed++;
+					}
+				}
+				return changed;
+			}).sum();
+			quiet = found == 0 ? quiet + 1 : 0;
+		}
+		for (int i = 0; i < SIZE; i++) {
+			if (values[i] == UNKNOWN)
+				values[i] = DRAWN;
+		}
+		return values;
+	}
+
+	//move generation for the three-piece positions of one ending, with the strong side as white
+	private static final class Solver {
+		final PieceKind kind;
+		final int[][] promotions;
+		final int[] values = new int[SIZE];
+
+		Solver(PieceKind kind, int[][] promotions) {
+			this.kind = kind;
+			this.promotions = promotions;
+			Arrays.fill(values, UNKNOWN);
+		}
+
+		//whether the side to move wins in exactly plies (odd) or loses in exactly plies (even), given all shorter
+		//results; values of exactly plies written by other threads in the same round are never looked at
+		boolean solvesIn(int index, int plies, int[] successors) {
+			int count = successors(index, successors);
+			if (plies % 2 == 1) {
+				for (int i = 0; i < count; i++) {
+					if (successors[i] == plies - 1)
+						return true;
+				}
+				return false;
+			}
+			for (int i = 0; i < count; i++) {
+				int value = successors[i];
+				if (value < 0 || value % 2 == 0 || value >= plies)
+					return false;
+			}
+			return true;
+		}
+
+		boolean inCheck(int index) {
+			int strongKing = (index >>> 12) & 63;
+			int weakKing = (index >>> 6) & 63;
+			int piece = index & 63;
+			//the strong king can only be attacked by the weak king, which it is never next to
+			return (index & WEAK_TO_MOVE) != 0 && attacks(piece, 1L << strongKing | 1L << weakKing, weakKing);
+		}
+
+		//fills successors with the value of the position after each legal move, for the side to move there,
+		//and returns their number, or -1 if index is not a legal position
+		int successors(int index, int[] successors) {
+			int strongKing = (index >>> 12) & 63;
+			int weakKing = (index >>> 6) & 63;
+			int piece = index & 63;
+			long strongKingBit = 1L << strongKing;
+			long weakKingBit = 1L << weakKing;
+			long pieceBit = 1L << piece;
+			if (strongKing == weakKing || strongKing == piece || weakKing == piece
+					|| Attacks.contains(Attacks.king(strongKing), weakKing)
+					|| (kind == PieceKind.PAWN && (piece < 8 || piece >= 56)))
+				return -1;
+
+			int count = 0;
+			if ((index & WEAK_TO_MOVE) == 0) {
+				//the weak side can't be in check with the strong side to move
+				if (attacks(piece, strongKingBit | weakKingBit, weakKing))
+					return -1;
+				for (long to = Attacks.king(strongKing) & ~(pieceBit | Attacks.king(weakKing)); to != 0; to &= to - 1)
+					successors[count++] = values[WEAK_TO_MOVE | Long.numberOfTrailingZeros(to) << 12 | weakKing << 6 | piece];
+				int kings = WEAK_TO_MOVE | strongKing << 12 | weakKing << 6;
+				if (kind == PieceKind.PAWN) {
+					//pawns move towards row 0, a capture would take the weak king
+					int to = piece - 8;
+					if (((strongKingBit | weakKingBit) & 1L << to) == 0) {
+						if (to < 8) {
+							for (int promotion = PieceKind.KNIGHT.ordinal(); promotion <= PieceKind.QUEEN.ordinal(); promotion++)
+								successors[count++] = promotions[promotion] == null ? DRAWN : promotions[promotion][kings | to];
+						} else {
+							successors[count++] = values[kings | to];
+							if (piece >= 48 && ((strongKingBit | weakKingBit) & 1L << (to - 8)) == 0)
+								successors[count++] = values[kings | (to - 8)];
+						}
+					}
+				} else {
+					long targets = slide(piece, strongKingBit | weakKingBit) & ~(strongKingBit | weakKingBit);
+					for (; targets != 0; targets &= targets - 1)
+						successors[count++] = values[kings | Long.numberOfTrailingZeros(targets)];
+				}
+			} else {
+				for (long to = Attacks.king(weakKing) & ~Attacks.king(strongKing); to != 0; to &= to - 1) {
+					int square = Long.numberOfTrailingZeros(to);
+					//taking the piece leaves two kings; otherwise the piece mustn't attack the square, seen through
+					//the square the king leaves
+					if (square == piece)
+						successors[count++] = DRAWN;
+					else if (!attacks(piece, strongKingBit | pieceBit, square))
+						successors[count++] = values[strongKing << 12 | square << 6 | piece];
+				}
+			}
+			return count;
+		}
+
+		boolean attacks(int piece, long occupied, int square) {
+			if (kind == PieceKind.PAWN)
+				return Attacks.contains(Attacks.pawn(Player.WHITE, piece), square);
+			return Attacks.contains(slide(piece, occupied), square);
+		}
+
+		long slide(int piece, long occupied) {
+			return kind == PieceKind.QUEEN ? Magic.queen(piece, occupied) : Magic.rook(piece, occupied);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: java chess.Tablebase directory");
+			System.exit(2);
+		}
+		long start = System.nanoTime();
+		write(Path.of(args[0]));
+		System.out.printf("wrote %s in %.2f s%n", Path.of(args[0]).toAbsolutePath(), (System.nanoTime() - start) / 1e9);
+	}
+}
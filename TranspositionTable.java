@@ -0,0 +1,154 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results keyed by {@link ChessModel#zobristKey()}.
+ *
+ * Entries live in two preallocated {@code long[]} arrays (key and packed data), so the table never allocates after
+ * construction and its size is known up front: 16 bytes per entry.  Entries are grouped in buckets of two slots.
+ * The first slot keeps the deepest result for its bucket, unless that result is from an older search; the second
+ * slot is always overwritten, so recent shallow results still get stored.
+ *
+ * Several search threads may use one table at the same time without locking.  Each slot stores {@code key ^ data}
+ * instead of the key, so a slot whose two words were written by different threads fails the check in
+ * {@link #probe(long)} and reads as a miss.  The table keeps no counters of its own, so threads sharing it only
+ * ever write its slots; {@link Search} counts probes, hits and stores per thread.
+ */
+public final class TranspositionTable {
+
+	public static final int EXACT = 0;
+	public static final int LOWER = 1;
+	public static final int UPPER = 2;
+
+	public static final int BYTES_PER_ENTRY = 16;
+
+	//data layout: move 16 bits | score 21 bits (signed) | depth 8 bits | bound 2 bits | generation 8 bits | valid
+	private static final int SCORE_SHIFT = 16;
+	private static final int DEPTH_SHIFT = 37;
+	private static final int BOUND_SHIFT = 45;
+	private static final int GENERATION_SHIFT = 47;
+	private static final long VALID = 1L << 63;
+
+	private final long[] keys;
+	private final long[] data;
+	private final int bucketMask;
+	private int generation;
+
+	/**
+	 * Create a table that takes at most {@code maxBytes} bytes, rounded down to a power of two number of buckets.
+	 *
+	 * @param maxBytes the memory budget of the table
+	 * @throws IllegalArgumentException if the budget is too small for a single bucket
+	 */
+	public TranspositionTable(long maxBytes) {
+		long buckets = Long.highestOneBit(maxBytes / (2 * BYTES_PER_ENTRY));
+		if (buckets < 1)
+			throw new IllegalArgumentException("Transposition table needs at least " + 2 * BYTES_PER_ENTRY + " bytes");
+		buckets = Math.min(buckets, 1 << 29);
+		keys = new long[(int) buckets * 2];
+		data = new long[(int) buckets * 2];
+		bucketMask = (int) buckets - 1;
+	}
+
+	/**
+	 * Return the data stored for {@code key}, or {@code 0} if the table has nothing for it.  Use the static
+	 * accessors to read the fields of the returned value.
+	 *
+	 * @param key the Zobrist key of the position
+	 * @return the packed entry, or {@code 0}
+	 */
+	public long probe(long key) {
+		int slot = bucket(key);
+		//read each word once, another thread may be writing the slot
+		long entry = data[slot];
+		if (entry != 0 && (keys[slot] ^ entry) == key)
+			return entry;
+		long second = data[slot + 1];
+		if (second != 0 && (keys[slot + 1] ^ second) == key)
+			return second;
+		return 0;
+	}
+
+	/**
+	 * Return whether the bucket {@code key} maps to holds any position, so a miss can be told apart from an index
+	 * collision.
+	 *
+	 * @param key the Zobrist key of the position
+	 * @return {@code true} if the depth-preferred slot of the bucket is in use
+	 */
+	public boolean isOccupied(long key) {
+		return data[bucket(key)] != 0;
+	}
+
+	/**
+	 * Store a search result for {@code key}.
+	 *
+	 * @param key   the Zobrist key of the position
+	 * @param move  the best move found, packed into 16 bits, or {@code 0} if none
+	 * @param score the score of the position
+	 * @param depth the depth the position was searched to
+	 * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+	 */
+	public void store(long key, int move, int score, int depth, int bound) {
+		long entry = VALID | (move & 0xFFFFL) | (score & 0x1FFFFFL) << SCORE_SHIFT
+				| (long) Math.max(0, Math.min(depth, 255)) << DEPTH_SHIFT | (long) bound << BOUND_SHIFT
+				| (long) generation << GENERATION_SHIFT;
+		int slot = bucket(key);
+		long old = data[slot];
+		//the depth-preferred slot only gives way to deeper results, results from a newer search, or the same position
+		if (old == 0 || (keys[slot] ^ old) == key || generation(old) != generation || depth >= depth(old)) {
+			keys[slot] = key ^ entry;
+			data[slot] = entry;
+		} else {
+			keys[slot + 1] = key ^ entry;
+			data[slot + 1] = entry;
+		}
+	}
+
+	/**
+	 * Start a new search, so the results of earlier searches become preferred for replacement.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+
+	public static int move(long entry) {
+		return (int) (entry & 0xFFFF);
+	}
+
+	public static int score(long entry) {
+		//sign-extend the 21-bit field
+		return (int) (entry << (64 - SCORE_SHIFT - 21) >> (64 - 21));
+	}
+
+	public static int depth(long entry) {
+		return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int bound(long entry) {
+		return (int) (entry >>> BOUND_SHIFT) & 3;
+	}
+
+	private static int generation(long entry) {
+		return (int) (entry >>> GENERATION_SHIFT) & 0xFF;
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	public long sizeInBytes() {
+		return (long) keys.length * BYTES_PER_ENTRY;
+	}
+
+	private int bucket(long key) {
+		//the low bits of the key pick the bucket, mixed with the high bits so small tables use all of it
+		return (int) ((key ^ (key >>> 32)) & bucketMask) << 1;
+	}
+}
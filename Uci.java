@@ -0,0 +1,307 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A UCI (Universal Chess Interface) front-end for the {@link Search} engine, so it can play in tournament managers
+ * and analysis programs that talk UCI over standard input and output.
+ *
+ * Supported commands are {@code uci}, {@code isready}, {@code setoption} for {@code Hash} (megabytes) and
+ * {@code Threads}, {@code ucinewgame}, {@code position startpos|fen ... [moves ...]}, {@code go} with
+ * {@code depth}, {@code nodes}, {@code movetime}, {@code wtime}, {@code btime}, {@code winc}, {@code binc},
+ * {@code movestogo} and {@code infinite}, {@code stop} and {@code quit}.  Others are ignored, as the protocol asks.
+ *
+ * The search runs on its own thread, so commands are still read while it runs: {@code isready} is answered at once
+ * and {@code stop} ends the search within the {@code 1024} nodes the search takes between looks at its stop flag.
+ * This model has neither castling nor en passant, so a {@code position} whose moves use them is set up only up to
+ * the first such move.
+ *
+ * Usage: {@code java chess.Uci}
+ */
+public class Uci {
+
+	private static final int MAX_HASH_MB = 4096;
+	private static final int MAX_THREADS = 64;
+	//time left for the moves after the last one before the time control, when the GUI doesn't say
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	//kept back from the clock for the time it takes the move to reach the GUI
+	private static final long MOVE_OVERHEAD_MS = 50;
+
+	private final ChessModel model = new ChessModel();
+	private final Search search = model.engine();
+	private final int[] buffer = new int[ChessModel.MAX_MOVES];
+	private final PrintStream out;
+
+	private Thread searching;
+	//with go infinite the best move is only sent once the GUI says stop
+	private boolean infinite;
+	private long started;
+
+	public Uci(PrintStream out) {
+		this.out = out;
+		search.setListener(this::info);
+	}
+
+	/**
+	 * Read commands from {@code in} until {@code quit} or the end of the input.
+	 *
+	 * @param in the commands, one per line
+	 * @throws IOException if reading fails
+	 */
+	public void run(BufferedReader in) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (!handle(line))
+				return;
+		}
+		handle("quit");
+	}
+
+	/**
+	 * Carry out one command.
+	 *
+	 * @param line the command line
+	 * @return {@code false} if the command was {@code quit}
+	 */
+	public boolean handle(String line) {
+		String[] words = line.trim().split("\\s+");
+		switch (words[0]) {
+			case "uci":
+				send("id name Chess");
+				send("id author the chess authors");
+				send("option name Hash type spin default " + (search.table().sizeInBytes() >> 20) + " min 1 max " + MAX_HASH_MB);
+				send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+				send("uciok");
+				break;
+			case "isready":
+				send("readyok");
+				break;
+			case "setoption":
+				finish();
+				setOption(words);
+				break;
+			case "ucinewgame":
+				finish();
+				search.table().clear();
+				break;
+			case "position":
+				finish();
+				position(line.trim(), words);
+				break;
+			case "go":
+				finish();
+				go(words);
+				break;
+			case "stop":
+				finish();
+				break;
+			case "quit":
+				finish();
+				return false;
+			default:
+				//unknown commands are ignored
+				break;
+		}
+		return true;
+	}
+
+	//setoption name <id> value <x>
+	private void setOption(String[] words) {
+		if (words.length < 5 || !words[1].equals("name") || !words[3].equals("value"))
+			return;
+		int value;
+		try {
+			value = Integer.parseInt(words[4]);
+		} catch (NumberFormatException e) {
+			send("info string invalid value " + words[4]);
+			return;
+		}
+		if (words[2].equalsIgnoreCase("Hash"))
+			search.setTable(new TranspositionTable((long) Math.max(1, Math.min(value, MAX_HASH_MB)) << 20));
+		else if (words[2].equalsIgnoreCase("Threads"))
+			search.setThreads(Math.max(1, Math.min(value, MAX_THREADS)));
+	}
+
+	private void position(String line, String[] words) {
+		int next;
+		try {
+			if (words.length > 1 && words[1].equals("fen")) {
+				int movesAt = line.indexOf(" moves");
+				int fenAt = line.indexOf("fen") + 3;
+				model.setFen(line.substring(fenAt, movesAt < 0 ? line.length() : movesAt).trim());
+				for (next = 2; next < words.length && !words[next].equals("moves"); next++)
+					;
+			} else {
+				model.setFen(ChessModel.START_FEN);
+				next = 2;
+			}
+		} catch (IllegalArgumentException e) {
+			send("info string " + e.getMessage());
+			model.setFen(ChessModel.START_FEN);
+			return;
+		}
+		if (next >= words.length || !words[next].equals("moves"))
+			return;
+		for (int i = next + 1; i < words.length; i++) {
+			int move = legalMove(words[i]);
+			if (move == 0) {
+				send("info string illegal or unsupported move " + words[i]);
+				return;
+			}
+			model.makeMove(move);
+		}
+	}
+
+	//the legal move of the current player written as text, or 0
+	private int legalMove(String text) {
+		int parsed;
+		try {
+			parsed = PackedMove.parse(text);
+		} catch (IllegalArgumentException e) {
+			return 0;
+		}
+		int count = model.legalMoves(model.currentPlayer(), buffer);
+		for (int i = 0; i < count; i++) {
+			if (PackedMove.key(buffer[i]) == PackedMove.key(parsed))
+				return buffer[i];
+		}
+		return 0;
+	}
+
+	private void go(String[] words) {
+		int depth = Search.MAX_PLY;
+		long nodes = Long.MAX_VALUE;
+		long moveTime = 0;
+		long time = 0;
+		long increment = 0;
+		int movesToGo = DEFAULT_MOVES_TO_GO;
+		boolean white = model.currentPlayer() == Player.WHITE;
+		boolean infinite = false;
+		for (int i = 1; i < words.length; i++) {
+			String word = words[i];
+			if (word.equals("infinite")) {
+				infinite = true;
+				continue;
+			}
+			if (i + 1 >= words.length)
+				break;
+			long value;
+			try {
+				value = Long.parseLong(words[i + 1]);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			switch (word) {
+				case "depth":
+					depth = (int) Math.min(value, Search.MAX_PLY);
+					break;
+				case "nodes":
+					nodes = value;
+					break;
+				case "movetime":
+					moveTime = value;
+					break;
+				case "wtime":
+				case "btime":
+					if (word.equals("wtime") == white)
+						time = value;
+					break;
+				case "winc":
+				case "binc":
+					if (word.equals("winc") == white)
+						increment = value;
+					break;
+				case "movestogo":
+					movesToGo = (int) Math.max(1, value);
+					break;
+				default:
+					continue;
+			}
+			i++;
+		}
+		if (moveTime == 0 && time > 0) {
+			//an even share of the clock plus most of the increment, never more than the clock holds
+			moveTime = Math.min(time / movesToGo + increment * 3 / 4, time - MOVE_OVERHEAD_MS);
+			moveTime = Math.max(1, moveTime);
+		}
+
+		search.setDepthLimit(depth);
+		search.setNodeLimit(nodes);
+		search.setTimeLimit(moveTime);
+		search.clearStop();
+		synchronized (this) {
+			this.infinite = infinite;
+		}
+		started = System.nanoTime();
+		searching = new Thread(this::think, "uci-search");
+		searching.start();
+	}
+
+	private void think() {
+		search.search();
+		synchronized (this) {
+			while (infinite) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		int best = search.bestMove();
+		//a search stopped before it finished a root move has none, but the GUI still needs a legal one
+		if (best == 0 && model.legalMoves(model.currentPlayer(), buffer) > 0)
+			best = buffer[0];
+		send("bestmove " + (best == 0 ? "0000" : PackedMove.toString(best)));
+	}
+
+	//stops a running search and waits for its best move to be sent
+	private void finish() {
+		if (searching == null)
+			return;
+		search.stop();
+		synchronized (this) {
+			infinite = false;
+			notifyAll();
+		}
+		try {
+			searching.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		searching = null;
+	}
+
+	private void info(Search search) {
+		long millis = Math.max(1, (System.nanoTime() - started) / 1000000);
+		StringBuilder line = new StringBuilder("info depth ").append(search.completedDepth()).append(" score ");
+		int score = search.score();
+		if (Math.abs(score) >= Search.MATE - Search.MAX_PLY) {
+			int plies = Search.MATE - Math.abs(score);
+			line.append("mate ").append(score > 0 ? (plies + 1) / 2 : -plies / 2);
+		} else {
+			line.append("cp ").append(score);
+		}
+		line.append(" nodes ").append(search.nodes()).append(" nps ").append(search.nodes() * 1000 / millis)
+				.append(" time ").append(millis).append(" pv");
+		for (int move : search.packedPrincipalVariation())
+			line.append(' ').append(PackedMove.toString(move));
+		send(line.toString());
+	}
+
+	//the search thread and the reading thread both write
+	private synchronized void send(String line) {
+		out.println(line);
+		out.flush();
+	}
+
+	public static void main(String[] args) throws IOException {
+		PrintStream out = new PrintStream(System.out, false, StandardCharsets.US_ASCII);
+		new Uci(out).run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII)));
+	}
+}
@@ -0,0 +1,48 @@
+package chess;
+
+/**
+ * Random 64-bit keys used to hash positions.  A position's key is the XOR of one key per (piece, square) pair on
+ * the board, plus {@link #BLACK_TO_MOVE} when it is black's turn, so a move only has to XOR in and out the keys
+ * that changed.
+ *
+ * The keys come from a fixed seed, so the same position hashes to the same key in every run.
+ */
+public final class Zobrist {
+
+	//indexed [PieceKind.code(player) * 64 + square]
+	private static final long[] PIECE_SQUARE = new long[12 * 64];
+
+	public static final long BLACK_TO_MOVE;
+
+	static {
+		//xorshift64* with a fixed seed
+		long seed = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < PIECE_SQUARE.length; i++) {
+			seed ^= seed >>> 12;
+			seed ^= seed << 25;
+			seed ^= seed >>> 27;
+			PIECE_SQUARE[i] = seed * 0x2545F4914F6CDD1DL;
+		}
+		seed ^= seed >>> 12;
+		seed ^= seed << 25;
+		seed ^= seed >>> 27;
+		BLACK_TO_MOVE = seed * 0x2545F4914F6CDD1DL;
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * Return the key of {@code piece} standing on {@code square}.
+	 *
+	 * @param piece  the piece, or {@code null} for an empty square
+	 * @param square the square index ({@code row * 8 + column})
+	 * @return the key to XOR into the position key, {@code 0} for an empty square
+	 */
+	public static long key(IChessPiece piece, int square) {
+		if (piece == null)
+			return 0;
+		return PIECE_SQUARE[piece.kind().code(piece.player()) * 64 + square];
+	}
+
+}